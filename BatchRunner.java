@@ -0,0 +1,365 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class BatchRunner
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Encrypts or decrypts many message files in one JVM,
+ ||                   for jobs that would otherwise start Encrypt once per
+ ||                   file. The files come from a manifest (one "deck
+ ||                   message [output]" line per job) or from a deck file
+ ||                   and a glob such as messages/*.txt. Every job runs on
+ ||                   its own virtual thread, with at most -jobs of them
+ ||                   running at a time; each deck file is read once and
+ ||                   its SolitaireEngine shared by every job that uses it.
+ ||                   Each message gets its own output file, holding what
+ ||                   Encrypt would have written to encryptedMessage.txt
+ ||                   (or Decrypt to its -out file). Errors are reported
+ ||                   per file, in job order, after a summary of the run.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  ENCRYPTED_SUFFIX, DECRYPTED_SUFFIX – added to a
+ ||                   message file's name to name its output.
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  None
+ ||
+ ||  Class Methods:  void main(String[] args)
+ ||                        – Runs a batch.
+ ||
+ ||  Inst. Methods:  None
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+class BatchRunner {
+    static final String ENCRYPTED_SUFFIX = ".enc";
+    static final String DECRYPTED_SUFFIX = ".dec";
+
+    // One message file to encrypt or decrypt; error is set if it failed
+    private static final class Job {
+        final Path deck;
+        final Path message;
+        final Path output;
+        volatile String error;
+
+        Job(Path deck, Path message, Path output) {
+            this.deck = deck;
+            this.message = message;
+            this.output = output;
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Method MAIN
+ |
+ |  Purpose:  Parse the command line
+ |
+ |              java BatchRunner [-decrypt] [-jobs <n>] [-out <dir>]
+ |                               (-manifest <file> | <deckFile> <glob>)
+ |
+ |            build the list of jobs and run them. Without a third
+ |            column in the manifest, a message's output goes next to it
+ |            (or into -out <dir>) under its own name plus ENCRYPTED_SUFFIX
+ |            or DECRYPTED_SUFFIX. -jobs defaults to the number of
+ |            processors.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: Every job has been run and the summary printed.
+ |
+ |  Parameters:
+ |      args -- the command line, as above
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    public static void main(String[] args) {
+        boolean encrypt = true;
+        int limit = Runtime.getRuntime().availableProcessors();
+        Path outputDirectory = null;
+        Path manifest = null;
+        boolean usage = false;
+        List<String> operands = new ArrayList<>();
+        for (int i = 0; i < args.length && !usage; i++) {
+            switch (args[i]) {
+                case "-decrypt": encrypt = false; break;
+                case "-jobs":
+                    limit = i + 1 < args.length ? parseCount(args[++i]) : -1;
+                    usage = limit < 1;
+                    break;
+                case "-out":
+                    usage = i + 1 == args.length;
+                    if (!usage) {
+                        outputDirectory = Path.of(args[++i]);
+                    }
+                    break;
+                case "-manifest":
+                    usage = i + 1 == args.length;
+                    if (!usage) {
+                        manifest = Path.of(args[++i]);
+                    }
+                    break;
+                default: operands.add(args[i]);
+            }
+        }
+        if (usage || operands.size() != (manifest == null ? 2 : 0)) {
+            System.out.println("Usage: java BatchRunner [-decrypt] [-jobs <n>] [-out <dir>] "
+                    + "(-manifest <file> | <deckFile> <glob>)");
+            return;
+        }
+
+        String suffix = encrypt ? ENCRYPTED_SUFFIX : DECRYPTED_SUFFIX;
+        List<Job> jobs;
+        try {
+            jobs = manifest != null ? readManifest(manifest, outputDirectory, suffix)
+                                    : listGlob(Path.of(operands.get(0)), operands.get(1),
+                                               outputDirectory, suffix);
+            if (outputDirectory != null) {
+                Files.createDirectories(outputDirectory);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+
+        run(jobs, encrypt, limit);
+    }
+
+    private static int parseCount(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods READ_MANIFEST, LIST_GLOB and OUTPUT_FOR
+ |
+ |  Purpose:  READ_MANIFEST -- one job per line of the manifest: deck
+ |                             file, message file and optionally output
+ |                             file, separated by white space. Blank
+ |                             lines and lines starting with # are
+ |                             skipped; relative paths are relative to
+ |                             the current directory. Two jobs may not
+ |                             write the same output file (e.g. a/x.txt
+ |                             and b/x.txt with -out), since they would
+ |                             run at the same time and one output
+ |                             would be lost.
+ |            LIST_GLOB     -- one job per file matching the glob, in
+ |                             name order. Only the file name part of
+ |                             the glob may contain wildcards.
+ |            OUTPUT_FOR    -- the default output file for a message.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: No job has been run.
+ |
+ |  Parameters:
+ |      manifest        -- the manifest file
+ |      deck            -- the deck file for every message
+ |      glob            -- the message files
+ |      outputDirectory -- where outputs go, or null for beside each message
+ |      suffix          -- added to the message file's name
+ |
+ |  Returns:  The jobs; OUTPUT_FOR: the output path.
+ |
+ |  Throws:   IOException if the manifest or directory cannot be read;
+ |            READ_MANIFEST: also if a line does not have 2 or 3 fields,
+ |            or names the same output file as an earlier line.
+ *-------------------------------------------------------------------*/
+    private static List<Job> readManifest(Path manifest, Path outputDirectory, String suffix)
+            throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        Map<Path, Integer> outputLines = new HashMap<>();   // Normalized output -> line
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(manifest)) {
+            lineNumber++;
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] fields = trimmed.split("\\s+");
+            if (fields.length != 2 && fields.length != 3) {
+                throw new IOException(manifest + " line " + lineNumber
+                        + ": expected <deckFile> <messageFile> [<outputFile>]");
+            }
+            Path message = Path.of(fields[1]);
+            Path output = fields.length == 3 ? Path.of(fields[2])
+                                             : outputFor(message, outputDirectory, suffix);
+            Integer earlier = outputLines.putIfAbsent(output.toAbsolutePath().normalize(), lineNumber);
+            if (earlier != null) {
+                throw new IOException(manifest + " line " + lineNumber + ": output file " + output
+                        + " is already written by line " + earlier);
+            }
+            jobs.add(new Job(Path.of(fields[0]), message, output));
+        }
+        return jobs;
+    }
+
+    private static List<Job> listGlob(Path deck, String glob, Path outputDirectory, String suffix)
+            throws IOException {
+        Path pattern = Path.of(glob);
+        Path directory = pattern.getParent() != null ? pattern.getParent() : Path.of("");
+        List<Path> messages = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(
+                directory.toString().isEmpty() ? Path.of(".") : directory,
+                pattern.getFileName().toString())) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file)) {
+                    messages.add(directory.resolve(file.getFileName()));
+                }
+            }
+        }
+        messages.sort(null);
+
+        List<Job> jobs = new ArrayList<>();
+        for (Path message : messages) {
+            jobs.add(new Job(deck, message, outputFor(message, outputDirectory, suffix)));
+        }
+        return jobs;
+    }
+
+    private static Path outputFor(Path message, Path outputDirectory, String suffix) {
+        String name = message.getFileName() + suffix;
+        return outputDirectory != null ? outputDirectory.resolve(name) : message.resolveSibling(name);
+    }
+
+/*---------------------------------------------------------------------
+ |  Method RUN
+ |
+ |  Purpose:  Start one virtual thread per job, waiting for a permit
+ |            before each so that at most limit jobs hold a deck,
+ |            message and output in memory at once. Engines are made
+ |            on first use of a deck file and kept in a map keyed by
+ |            the deck's absolute path; two jobs that race to make the
+ |            same engine may both read the file, which is harmless.
+ |            When every job has finished, print the summary and then
+ |            the failed jobs.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: Every job has been run.
+ |
+ |  Parameters:
+ |      jobs    -- the jobs, in the order to report them
+ |      encrypt -- true to encrypt, false to decrypt
+ |      limit   -- the most jobs to run at once
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    private static void run(List<Job> jobs, boolean encrypt, int limit) {
+        Map<Path, SolitaireEngine> engines = new ConcurrentHashMap<>();
+        Semaphore permits = new Semaphore(limit);
+        LongAdder bytesIn = new LongAdder();
+        LongAdder bytesOut = new LongAdder();
+        long start = System.nanoTime();
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Job job : jobs) {
+                permits.acquireUninterruptibly();
+                threads.execute(() -> {
+                    try {
+                        runJob(job, encrypt, engines, bytesIn, bytesOut);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int failed = 0;
+        for (Job job : jobs) {
+            if (job.error != null) {
+                failed++;
+            }
+        }
+        System.out.printf("%s %d files (%d failed, %d decks) in %.2f s: %.1f files/s, %.2f MB/s in, %.2f MB/s out%n",
+                encrypt ? "Encrypted" : "Decrypted", jobs.size() - failed, failed, engines.size(),
+                seconds, jobs.size() / seconds, bytesIn.sum() / seconds / 1e6,
+                bytesOut.sum() / seconds / 1e6);
+        for (Job job : jobs) {
+            if (job.error != null) {
+                System.out.println("Error: " + job.message + ": " + job.error);
+            }
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Method RUN_JOB
+ |
+ |  Purpose:  Encrypt or decrypt one message file with the engine for
+ |            its deck and write the output file. A message without
+ |            letters still gets its (empty) output file, as from
+ |            Encrypt, but counts as failed. So does a job whose engine
+ |            throws a RuntimeException, or runs out of memory on a
+ |            very large message; the exception is recorded and the
+ |            other jobs carry on.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: job.error is set if the job failed.
+ |
+ |  Parameters:
+ |      job      -- the job
+ |      encrypt  -- true to encrypt, false to decrypt
+ |      engines  -- engines by absolute deck path
+ |      bytesIn  -- counts message bytes read
+ |      bytesOut -- counts output bytes written
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    private static void runJob(Job job, boolean encrypt, Map<Path, SolitaireEngine> engines,
+                               LongAdder bytesIn, LongAdder bytesOut) {
+        try {
+            SolitaireEngine engine = engines.get(job.deck.toAbsolutePath());
+            if (engine == null) {
+                engine = SolitaireEngine.load(job.deck.toString());
+                engines.putIfAbsent(job.deck.toAbsolutePath(), engine);
+            }
+
+            if (!Files.exists(job.message)) {
+                job.error = "message file not found";
+                return;
+            }
+            byte[] message = Files.readAllBytes(job.message);
+            if (message.length == 0) {
+                job.error = "message file is empty";
+                return;
+            }
+            bytesIn.add(message.length);
+
+            byte[] output = encrypt ? engine.encrypt(message) : engine.decrypt(message);
+            Files.write(job.output, output);
+            bytesOut.add(output.length);
+            if (output.length == 0) {
+                job.error = "message file does not contain any letters";
+            }
+        } catch (IOException | UncheckedIOException e) {
+            job.error = e.getMessage();
+        } catch (RuntimeException | OutOfMemoryError e) {
+            // Anything else the engine throws fails only this job
+            job.error = e.toString();
+        }
+    }
+}
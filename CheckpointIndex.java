@@ -0,0 +1,235 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class CheckpointIndex
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Reads the checkpoint index written by IndexWriter, so
+ ||                   one line of a large encrypted file can be decrypted
+ ||                   without replaying the keystream for every line
+ ||                   before it. The keystream for a line is restored from
+ ||                   the nearest saved deck at or before its position and
+ ||                   advanced by at most one interval.
+ ||
+ ||                   Layout (all numbers big-endian):
+ ||                     header      MAGIC, VERSION, interval      3 ints
+ ||                     lines       byte offset, keystream
+ ||                                 position of each line         2 longs each
+ ||                     checkpoints the 28 cards after 0, interval,
+ ||                                 2 * interval, ... values      28 bytes each
+ ||                     trailer     line count, checkpoint count,
+ ||                                 encrypted file length         3 longs
+ ||
+ ||                   Every part has a fixed size, so a line and its
+ ||                   checkpoint are found with two seeks whatever the
+ ||                   size of the file.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  Closeable
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  MAGIC, VERSION, SUFFIX, HEADER_SIZE, LINE_SIZE,
+ ||                   CHECKPOINT_SIZE, TRAILER_SIZE
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  None (see open)
+ ||
+ ||  Class Methods:  CheckpointIndex open(String path)
+ ||                        – Opens and checks an index file.
+ ||
+ ||  Inst. Methods:  long lineCount(), long dataLength()
+ ||                        – Values from the trailer.
+ ||
+ ||                   long lineOffset(long line), long linePosition(long line)
+ ||                        – Where a line starts, in the file and in the
+ ||                          keystream.
+ ||
+ ||                   int[] checkpoint(long number)
+ ||                        – A saved card order.
+ ||
+ ||                   KeystreamGenerator keystreamAt(long position)
+ ||                        – A generator resumed at the given position.
+ ||
+ ||                   void close()
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+
+class CheckpointIndex implements Closeable {
+    static final int MAGIC = 0x534c4958;    // "SLIX"
+    static final int VERSION = 1;
+    static final String SUFFIX = ".idx";    // Added to the encrypted file name
+    static final int HEADER_SIZE = 12;
+    static final int LINE_SIZE = 16;
+    static final int CHECKPOINT_SIZE = 28;
+    static final int TRAILER_SIZE = 24;
+
+    private final FileChannel channel;
+    private final int interval;
+    private final long lineCount;
+    private final long checkpointCount;
+    private final long dataLength;
+    private final long checkpointStart;   // File offset of checkpoint 0
+
+    private CheckpointIndex(FileChannel channel, int interval, long lineCount,
+                            long checkpointCount, long dataLength) {
+        this.channel = channel;
+        this.interval = interval;
+        this.lineCount = lineCount;
+        this.checkpointCount = checkpointCount;
+        this.dataLength = dataLength;
+        this.checkpointStart = HEADER_SIZE + lineCount * LINE_SIZE;
+    }
+
+/*---------------------------------------------------------------------
+ |  Method OPEN
+ |
+ |  Purpose:  Open an index file, check its header and check that its
+ |            size matches the counts in its trailer.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: The file is open for reading.
+ |
+ |  Parameters:
+ |      path -- the index file
+ |
+ |  Returns:  The open index.
+ |
+ |  Throws:   IOException if the file cannot be read or is not a
+ |            complete checkpoint index.
+ *-------------------------------------------------------------------*/
+    static CheckpointIndex open(String path) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(path));
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE + CHECKPOINT_SIZE + TRAILER_SIZE) {
+                throw new IOException("Not a checkpoint index: " + path);
+            }
+            ByteBuffer header = read(channel, 0, HEADER_SIZE);
+            ByteBuffer trailer = read(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+            int magic = header.getInt();
+            int version = header.getInt();
+            int interval = header.getInt();
+            long lineCount = trailer.getLong();
+            long checkpointCount = trailer.getLong();
+            long dataLength = trailer.getLong();
+
+            if (magic != MAGIC || version != VERSION || interval <= 0 || lineCount < 0
+                    || checkpointCount < 1
+                    || size != HEADER_SIZE + lineCount * LINE_SIZE
+                               + checkpointCount * CHECKPOINT_SIZE + TRAILER_SIZE) {
+                throw new IOException("Not a checkpoint index: " + path);
+            }
+            return new CheckpointIndex(channel, interval, lineCount, checkpointCount, dataLength);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    long lineCount() {
+        return lineCount;
+    }
+
+    long dataLength() {
+        return dataLength;
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods LINE_OFFSET, LINE_POSITION and CHECKPOINT
+ |
+ |  Purpose:  LINE_OFFSET   -- byte offset of a line in the encrypted file.
+ |            LINE_POSITION -- keystream position of its first letter.
+ |            CHECKPOINT    -- the card order saved after
+ |                             number * interval keystream values.
+ |
+ |  Pre-condition: 0 <= line < lineCount(); number is below the number
+ |                 of checkpoints.
+ |
+ |  Post-condition: Nothing is changed.
+ |
+ |  Parameters:
+ |      line   -- the line, counting from 0
+ |      number -- the checkpoint, counting from 0
+ |
+ |  Returns:  The offset, position or a new array of 28 cards.
+ |
+ |  Throws:   IOException if the index cannot be read or a saved deck
+ |            is not a permutation of the 28 cards.
+ *-------------------------------------------------------------------*/
+    long lineOffset(long line) throws IOException {
+        return read(channel, HEADER_SIZE + line * LINE_SIZE, 8).getLong();
+    }
+
+    long linePosition(long line) throws IOException {
+        return read(channel, HEADER_SIZE + line * LINE_SIZE + 8, 8).getLong();
+    }
+
+    int[] checkpoint(long number) throws IOException {
+        ByteBuffer saved = read(channel, checkpointStart + number * CHECKPOINT_SIZE, CHECKPOINT_SIZE);
+        int[] cards = new int[28];
+        boolean[] seen = new boolean[29];
+        for (int i = 0; i < 28; i++) {
+            int card = saved.get();
+            if (card < 1 || card > 28 || seen[card]) {
+                throw new IOException("Checkpoint " + number + " is not a valid deck");
+            }
+            seen[card] = true;
+            cards[i] = card;
+        }
+        return cards;
+    }
+
+/*---------------------------------------------------------------------
+ |  Method KEYSTREAM_AT
+ |
+ |  Purpose:  Restore the deck from the last checkpoint at or before
+ |            position, in the representation chosen with
+ |            -Dsolitaire.deck, and skip the values between the
+ |            checkpoint and position.
+ |
+ |  Pre-condition: position is no further than the index covers, e.g.
+ |                 a value returned by linePosition().
+ |
+ |  Post-condition: Nothing is changed in the index.
+ |
+ |  Parameters:
+ |      position -- the keystream position to resume at
+ |
+ |  Returns:  A generator whose next value is the one at position.
+ |
+ |  Throws:   IOException if the checkpoint cannot be read.
+ *-------------------------------------------------------------------*/
+    KeystreamGenerator keystreamAt(long position) throws IOException {
+        long number = Math.min(position / interval, checkpointCount - 1);
+        Deck deck = new Deck();
+        deck.setDeck(checkpoint(number));
+        KeystreamGenerator keystream = new KeystreamGenerator(SolitaireDeck.select(deck),
+                number * interval);
+        keystream.skip(position - keystream.position());
+        return keystream;
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static ByteBuffer read(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Checkpoint index is truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,108 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Interface Combiner
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Combines message values with keystream values, a
+ ||                   whole chunk at a time: encrypt adds them mod 26
+ ||                   (0 becoming 26) and decrypt subtracts them (values
+ ||                   of 0 or less gaining 26). ScalarCombiner does this
+ ||                   one value at a time. VectorCombiner, in simd/, does
+ ||                   it a vector of bytes at a time with the incubating
+ ||                   Vector API; it is compiled separately and loaded by
+ ||                   name, so the rest of the program builds and runs on
+ ||                   any JDK, falling back to ScalarCombiner whenever
+ ||                   VectorCombiner is missing or the JVM was started
+ ||                   without --add-modules jdk.incubator.vector.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  COMBINE_PROPERTY – name of the system property used
+ ||                                     by select() ("solitaire.combine").
+ ||                   INSTANCE         – the combiner chosen by select().
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||  Class Methods:  Combiner select()
+ ||                        – Returns the combiner chosen by the
+ ||                          solitaire.combine property.
+ ||
+ ||  Inst. Methods:  void encrypt(byte[] values, int off, byte[] key, int keyOff, int len)
+ ||                   void decrypt(byte[] values, int off, byte[] key, int keyOff, int len)
+ ||                        – Replace len message values with the result.
+ ||
+ ++-----------------------------------------------------------------------*/
+
+interface Combiner {
+    String COMBINE_PROPERTY = "solitaire.combine";
+    Combiner INSTANCE = select();
+
+/*---------------------------------------------------------------------
+ |  Methods ENCRYPT and DECRYPT
+ |
+ |  Purpose:  ENCRYPT -- values[off + j] becomes
+ |                       (values[off + j] + key[keyOff + j]) mod 26,
+ |                       with 0 mapped to 26.
+ |            DECRYPT -- values[off + j] becomes
+ |                       values[off + j] - key[keyOff + j], plus 26 if
+ |                       that is 0 or less.
+ |
+ |  Pre-condition: Both ranges hold len values in the range 1–26.
+ |
+ |  Post-condition: The message values have been replaced; key is
+ |                  unchanged.
+ |
+ |  Parameters:
+ |      values -- message values, overwritten with the result
+ |      off    -- first message value
+ |      key    -- keystream values
+ |      keyOff -- first keystream value
+ |      len    -- number of values to combine
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    void encrypt(byte[] values, int off, byte[] key, int keyOff, int len);
+
+    void decrypt(byte[] values, int off, byte[] key, int keyOff, int len);
+
+/*---------------------------------------------------------------------
+ |  Method SELECT
+ |
+ |  Purpose:  Choose the combiner. The solitaire.combine system property
+ |            may be "auto" (the default: VectorCombiner if it can be
+ |            loaded, otherwise ScalarCombiner), "vector" (VectorCombiner
+ |            or an error) or "scalar".
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: None
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  The Combiner to use.
+ *-------------------------------------------------------------------*/
+    static Combiner select() {
+        String kind = System.getProperty(COMBINE_PROPERTY, "auto");
+        switch (kind) {
+            case "scalar": return new ScalarCombiner();
+            case "auto":
+            case "vector":
+                try {
+                    return (Combiner) Class.forName("VectorCombiner")
+                            .getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    if (kind.equals("vector")) {
+                        throw new IllegalStateException("VectorCombiner is not available: " + e, e);
+                    }
+                    return new ScalarCombiner();
+                }
+            default:
+                throw new IllegalArgumentException("Unknown combiner: " + kind);
+        }
+    }
+}
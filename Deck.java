@@ -12,7 +12,7 @@
  ||
  ||  Inherits From:  None
  ||
- ||     Interfaces:  None
+ ||     Interfaces:  SolitaireDeck
  ||
  |+-----------------------------------------------------------------------
  ||
@@ -32,9 +32,16 @@
  ||           Reads a deck configuration from a file and initializes this
  ||           object’s deck accordingly.
  ||
+ ||      - void setDeck(int[] cards)
+ ||           Initializes this object’s deck from a copy of a card order,
+ ||           e.g. a saved deck state.
+ ||
  ||      - int[] getDeck()
  ||           Returns the current state of the deck as an array.
  ||
+ ||      - int cardAt(int position)
+ ||           Returns the card at a position in the deck.
+ ||
  ||      - int[] readDeckFile(String deckFilePath)
  ||           Reads and parses a deck file, returning the deck as an array
  ||           of integers.
@@ -45,6 +52,9 @@
  ||      - int findIndex(int value)
  ||           Finds the index of a given card in the deck.
  ||
+ ||      - void indexPositions()
+ ||           Rebuilds the card-to-position index from the deck array.
+ ||
  ||      - void swapSlice(int i, int j, int k, int l)
  ||           Rearranges the deck by slicing and concatenating subarrays.
  ||
@@ -61,23 +71,27 @@
  ||      - void countCut()
  ||           Performs a count cut based on the value of the bottom card.
  ||
- ||      - int cardToNumber(String card)
- ||           Helper method that converts a string card label (e.g., "AC",
- ||           "10D", "JB") into its corresponding integer value.
+ ||      - void countCut(int count)
+ ||           Performs a count cut of a given number of cards.
  ||
  ++-----------------------------------------------------------------------*/
-import java.util.Scanner;
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.io.IOException;
 
-class Deck {
+class Deck implements SolitaireDeck {
     private int[] deck;   // Field representing the deck of 28 cards
+    private int[] spare;  // Second buffer the cuts are built in, then swapped with deck
+    private int[] position; // Inverse of deck: position[card] is the index of that card
 
     /*---------------------------------------------------------------------
      |  Constructor Deck
      |
      |  Purpose: Initializes an empty deck of size 28. The contents are
-     |           populated later via setDeck().
+     |           populated later via setDeck(). A second 28-element
+     |           buffer is also allocated once here so that the cuts
+     |           never need to allocate while the keystream is running,
+     |           along with the card-to-position index (indexed by card
+     |           value 0-28, where 0 marks an unreadable card).
      |
      |  Pre-condition: None
      |  Post-condition: A new Deck object exists with a 28-element int array.
@@ -88,6 +102,8 @@ class Deck {
      *-------------------------------------------------------------------*/
     Deck() {
         this.deck = new int[28];
+        this.spare = new int[28];
+        this.position = new int[29];
     }
 
     /*---------------------------------------------------------------------
@@ -119,32 +135,42 @@ class Deck {
 
     void setDeck(String deckFilePath) {
          this.deck = readDeckFile(deckFilePath);
+         if (this.deck != null) {
+             indexPositions();
+         }
+    }
+
+    void setDeck(int[] cards) {
+        this.deck = cards.clone();
+        indexPositions();
     }
 
     int[] getDeck() {
         return deck;
     }
 
+    public int cardAt(int position) {
+        return deck[position];
+    }
+
 /*---------------------------------------------------------------------
  |  Method READ_DECK_FILE
  |
- |  Purpose:  Helper method to read a deck configuration from a text file 
+ |  Purpose:  Helper method to read a deck configuration from a file 
  |            located at deckFilePath and populate the Deck object's internal
  |            deck array with 28 integer values corresponding to cards.
- |            Each card in the file is converted to its numeric value
- |            using the cardToNumber helper method. The method checks
- |            for common errors such as missing file, empty file, or
- |            an incomplete deck.
+ |            The file is read through DeckFile, which accepts the text
+ |            format or the binary format, parses it only once per run
+ |            while it is unchanged, and checks that it holds every card
+ |            exactly once. Missing, empty, incomplete or invalid decks
+ |            are reported with an error message.
  |
  |  Pre-condition: deckFilePath points to a file that exists on disk.
- |                 The file may contain up to 28 valid card identifiers
- |                 in a format recognized by cardToNumber.
  |
  |  Post-condition: The internal deck array is populated with the numeric
  |                  values of the cards read from the file, in order.
- |                  If an error occurs (file missing, empty, or incomplete),
- |                  appropriate error messages are printed and the deck
- |                  may remain partially populated or null.
+ |                  If an error occurs, an error message is printed and
+ |                  null is returned.
  |
  |  Parameters:
  |      deckFilePath -- the path to the text file containing the deck.
@@ -153,35 +179,17 @@ class Deck {
  |
  |  Returns:  An integer array of length 28 representing the deck, with
  |            cards converted to numeric values. Returns null if the
- |            file does not exist or is empty.
+ |            file cannot be used as a deck.
  *-------------------------------------------------------------------*/
     private int[] readDeckFile(String deckFilePath) {
-        File deckFile = new File(deckFilePath);
-        boolean deckExists = deckFile.exists();
-        if (deckExists == false) {
-            System.out.println("Error: deck file not found");
-            return null;
-        }
-
-        if (deckFile.length() == 0) {
-            System.out.println("Error: deck file is empty");
-            return null;
-        }
-
-        try (Scanner deckScanner = new Scanner(deckFile)) {
-            int i = 0;
-            while (deckScanner.hasNext() && i < 28) {
-                String card = deckScanner.next();
-                deck[i] = cardToNumber(card); 
-                i++;
-            }
-
-            if (i < 28) {
-                System.out.println("Error: deck file does not contain 28 cards");
+        try {
+            DeckState read = DeckFile.load(deckFilePath);
+            for (int i = 0; i < 28; i++) {
+                deck[i] = read.cardAt(i);
             }
-
-        } catch (FileNotFoundException e) {
-            System.out.println("Error reading deck file");
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            return null;
         }
         return deck;
     }
@@ -199,7 +207,8 @@ class Deck {
  |                 the range 0 to 27.
  |
  |  Post-condition: The values at positions i and j in the deck array
- |                  have been swapped. The rest of the deck remains
+ |                  have been swapped, and the position index updated
+ |                  for both cards. The rest of the deck remains
  |                  unchanged.
  |
  |  Parameters:
@@ -212,6 +221,8 @@ class Deck {
         int first = deck[i];
         deck[i] = deck[j];
         deck[j] = first;
+        position[deck[i]] = i;
+        position[first] = j;
     }
 /*---------------------------------------------------------------------
  |  Method FIND_INDEX
@@ -219,7 +230,9 @@ class Deck {
  |  Purpose:  Locate the position of a specific card value in the deck
  |            array. This method is used internally by other deck
  |            manipulation methods to identify the locations of jokers
- |            or specific cards.
+ |            or specific cards. The position index is kept up to date
+ |            by every operation that moves cards, so this is a single
+ |            array read rather than a scan of the deck.
  |
  |  Pre-condition: The Deck object has a properly initialized deck array
  |                 of length 28. The input value corresponds to a valid
@@ -230,16 +243,34 @@ class Deck {
  |  Parameters:
  |      value -- the numeric value of the card to locate in the deck.
  |
- |  Returns:  The index (0–27) of the first occurrence of the value in
- |            the deck array; returns -1 if the value is not found.
+ |  Returns:  The index (0–27) of the value in the deck array; returns
+ |            -1 if the value is not found.
  *-------------------------------------------------------------------*/
     private int findIndex(int value){ 
+        return position[value];
+    }
+/*---------------------------------------------------------------------
+ |  Method INDEX_POSITIONS
+ |
+ |  Purpose:  Rebuild the position index from the deck array. Called
+ |            after the deck is read from a file and after the cuts,
+ |            which move every card at once.
+ |
+ |  Pre-condition: The deck array holds 28 card values in the range
+ |                 0–28.
+ |
+ |  Post-condition: position[card] holds the index of each card in the
+ |                  deck; cards that do not appear hold -1.
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    private void indexPositions() {
+        Arrays.fill(position, -1);
         for (int i = 0; i < 28; i++) {
-            if (deck[i] == value) {
-                return i;  
-            }
+            position[deck[i]] = i;
         }
-        return -1;
     }
 /*---------------------------------------------------------------------
  |  Method SWAP_SLICE
@@ -249,7 +280,9 @@ class Deck {
  |            followed by any intervening cards, then the segment from
  |            indices i to j, and finally any remaining cards at the end.
  |            The indices i,j,k, and l are inclusive. This method is used
- |            internally by the tripleCut operation.
+ |            internally by the tripleCut operation. The segments are
+ |            copied into the spare buffer, which then becomes the deck,
+ |            so no new array is allocated.
  |
  |  Pre-condition: The Deck object has a properly initialized deck array
  |                 of length 28. Indices i, j, k, and l must satisfy
@@ -268,30 +301,29 @@ class Deck {
  |  Returns:  None (void)
  *-------------------------------------------------------------------*/
     private void swapSlice(int i, int j, int k, int l) {
-        int[] newDeck = new int[28];
+        int[] newDeck = spare;
         int index = 0;
 
-        for (int m = k; m <= l; m++) {
-            newDeck[index++] = deck[m];
-        }
+        System.arraycopy(deck, k, newDeck, index, l - k + 1);
+        index += l - k + 1;
 
         if (k > j + 1) {
-            for (int m = j + 1; m < k; m++) {
-                newDeck[index++] = deck[m];
-            }
+            System.arraycopy(deck, j + 1, newDeck, index, k - j - 1);
+            index += k - j - 1;
         }
 
-        for (int m = i; m <= j; m++) {
-            newDeck[index++] = deck[m];
-        }
+        System.arraycopy(deck, i, newDeck, index, j - i + 1);
+        index += j - i + 1;
 
         if (l + 1 < 28) {
-            for (int m = l + 1; m < 28; m++) {
-                newDeck[index++] = deck[m];
-            }
+            System.arraycopy(deck, l + 1, newDeck, index, 27 - l);
         }
 
+        spare = deck;
         deck = newDeck;
+        for (int m = 0; m < 28; m++) {
+            position[newDeck[m]] = m;
+        }
     }
 
 /*---------------------------------------------------------------------
@@ -312,7 +344,7 @@ class Deck {
  |
  |  Returns:  None (void)
  *-------------------------------------------------------------------*/
-    void moveJoker27(){
+    public void moveJoker27(){
         int jokerIndexA = findIndex(27);
         if (jokerIndexA == 27) {
             swap(jokerIndexA, 0);
@@ -340,7 +372,7 @@ class Deck {
  |  Returns:  None (void)
  *-------------------------------------------------------------------*/
 
-    void moveJoker28(){
+    public void moveJoker28(){
         for (int step = 0; step < 2; step++) {
             int jokerIndexB = findIndex(28);
             if (jokerIndexB == 27) {
@@ -369,7 +401,7 @@ class Deck {
  |
  |  Returns:  None (void)
  *-------------------------------------------------------------------*/
-    void tripleCut(){
+    public void tripleCut(){
         int index27 = findIndex(27);
         int index28 = findIndex(28);
         int firstJoker = Math.min(index27, index28);
@@ -383,7 +415,8 @@ class Deck {
  |            of the Solitaire encryption algorithm. The value of the
  |            bottom card (unless it is a joker) determines how many
  |            cards from the top of the deck are moved just above the
- |            bottom card, leaving the bottom card in place.
+ |            bottom card, leaving the bottom card in place. Like
+ |            swapSlice, the result is built in the spare buffer.
  |
  |  Pre-condition: The Deck object has a properly initialized deck array
  |                 of length 28. The bottom card contains a valid card
@@ -396,75 +429,44 @@ class Deck {
  |
  |  Returns:  None (void)
  *-------------------------------------------------------------------*/
-    void countCut(){
-        int[] oldDeck = getDeck();
-        int bottomCard = oldDeck[27];
+    public void countCut(){
+        int bottomCard = deck[27];
         if (bottomCard != 27 && bottomCard != 28) {
-            int[] newDeck = new int[28];
-            int index = 0;
-
-            for (int ii = bottomCard; ii < 27; ii++) {
-                newDeck[index++] = oldDeck[ii];
-            }
-
-            for (int ii = 0; ii < bottomCard; ii++) {
-                newDeck[index++] = oldDeck[ii];
-            }
-
-            newDeck[27] = oldDeck[27];
-            this.deck = newDeck;
+            countCut(bottomCard);
         }
     }
 
-    /*---------------------------------------------------------------------
-     |  Method cardToNumber
-     |
-     |  Purpose: Converts a card label (string form) into its integer value
-     |           (1–26 for regular cards, 27 and 28 for jokers).
-     |
-     |  Pre-condition: Input must be a valid card label.
-     |  Post-condition: An integer corresponding to the card is returned.
-     |
-     |  Parameters:
-     |      card -- the string identifier of a card (e.g., "AC", "10D", "JA").
-     |
-     |  Returns: int -- the numeric representation of the card.
-     *-------------------------------------------------------------------*/
-    private int cardToNumber(String card) {
-        switch (card.toUpperCase()) {
-            case "AC": return 1;
-            case "2C": return 2;
-            case "3C": return 3;
-            case "4C": return 4;
-            case "5C": return 5;
-            case "6C": return 6;
-            case "7C": return 7;
-            case "8C": return 8;
-            case "9C": return 9;
-            case "10C": return 10;
-            case "JC": return 11;
-            case "QC": return 12;
-            case "KC": return 13;
-
-            case "AD": return 14;
-            case "2D": return 15;
-            case "3D": return 16;
-            case "4D": return 17;
-            case "5D": return 18;
-            case "6D": return 19;
-            case "7D": return 20;
-            case "8D": return 21;
-            case "9D": return 22;
-            case "10D": return 23;
-            case "JD": return 24;
-            case "QD": return 25;
-            case "KD": return 26;
+/*---------------------------------------------------------------------
+ |  Method COUNT_CUT (with a count)
+ |
+ |  Purpose:  Perform a count cut by a given number instead of by the
+ |            value of the bottom card: the top count cards are moved
+ |            just above the bottom card, which stays in place. This is
+ |            the cut used when a deck is keyed with letters (see
+ |            RecordCipher).
+ |
+ |  Pre-condition: 0 <= count <= 27.
+ |
+ |  Post-condition: The deck has been cut; no cards are lost or
+ |                  duplicated.
+ |
+ |  Parameters:
+ |      count -- number of cards to move from the top
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    void countCut(int count) {
+        int[] oldDeck = getDeck();
+        int[] newDeck = spare;
 
-            case "JA": return 27; 
-            case "JB": return 28;
+        System.arraycopy(oldDeck, count, newDeck, 0, 27 - count);
+        System.arraycopy(oldDeck, 0, newDeck, 27 - count, count);
 
-            default:
-                return 0;
+        newDeck[27] = oldDeck[27];
+        spare = oldDeck;
+        this.deck = newDeck;
+        for (int ii = 0; ii < 27; ii++) {
+            position[newDeck[ii]] = ii;
         }
     }
 
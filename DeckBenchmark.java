@@ -0,0 +1,284 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class DeckBenchmark
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Small stand-alone microbenchmark for the deck
+ ||                   manipulations. It loads a deck file and reports how
+ ||                   many keystream steps (moveJoker27, moveJoker28,
+ ||                   tripleCut, countCut) and how many keystream values
+ ||                   (nextValue) per second each deck representation can
+ ||                   run. Before timing anything it checks that every
+ ||                   representation produces the same card order and the
+ ||                   same keystream as Deck over a long run.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  WARMUP_ROUNDS, MEASURE_ROUNDS, STEPS_PER_ROUND,
+ ||                   VERIFY_STEPS
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  None
+ ||
+ ||  Class Methods:  void main(String[] args)
+ ||                        – Runs the benchmark on the given deck file.
+ ||
+ ||                   void verify(SolitaireDeck reference, SolitaireDeck candidate, String name)
+ ||                        – Checks two representations stay identical.
+ ||
+ ||                   void verifyValues(SolitaireDeck reference, SolitaireDeck candidate, String name)
+ ||                        – Checks two representations give the same keystream.
+ ||
+ ||                   void verifySkip(SolitaireDeck reference, SolitaireDeck candidate, String name)
+ ||                        – Checks skip() ends where nextValue() calls do.
+ ||
+ ||                   void measure(SolitaireDeck deck, String name, boolean values)
+ ||                        – Times one representation and prints the result.
+ ||
+ ||                   long runSteps(SolitaireDeck deck, int steps)
+ ||                        – Runs the given number of steps and returns a
+ ||                          checksum so the work cannot be optimized away.
+ ||
+ ||                   long runValues(SolitaireDeck deck, int values)
+ ||                        – Same, for keystream values.
+ ||
+ ||  Inst. Methods:  None
+ ||
+ ++-----------------------------------------------------------------------*/
+
+class DeckBenchmark {
+    static final int WARMUP_ROUNDS = 5;
+    static final int MEASURE_ROUNDS = 10;
+    static final int STEPS_PER_ROUND = 2_000_000;
+    static final int VERIFY_STEPS = 1_000_000;
+
+/*---------------------------------------------------------------------
+ |  Method MAIN
+ |
+ |  Purpose:  Load the deck file named on the command line, verify the
+ |            alternative representations against Deck, then time each
+ |            representation in turn.
+ |
+ |  Pre-condition: args[0], if given, is the path to a valid deck file.
+ |                 Otherwise prog1deck.dat in the current directory is
+ |                 used.
+ |
+ |  Post-condition: The results are printed to standard output.
+ |
+ |  Parameters:
+ |      args -- args[0] = optional path to the deck file
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    public static void main(String[] args) {
+        String deckPath = args.length > 0 ? args[0] : "prog1deck.dat";
+
+        Deck deck = new Deck();
+        deck.setDeck(deckPath);
+        int[] cards = deck.getDeck().clone();
+
+        verify(newDeck(deckPath), new RotatingDeck(cards), "RotatingDeck");
+        verify(newDeck(deckPath), new PackedDeck(cards), "PackedDeck");
+        verifyValues(newDeck(deckPath), new RotatingDeck(cards), "RotatingDeck");
+        verifyValues(newDeck(deckPath), new PackedDeck(cards), "PackedDeck");
+        verifySkip(newDeck(deckPath), newDeck(deckPath), "Deck");
+        verifySkip(newDeck(deckPath), new RotatingDeck(cards), "RotatingDeck");
+        verifySkip(newDeck(deckPath), new PackedDeck(cards), "PackedDeck");
+
+        measure(newDeck(deckPath), "Deck", false);
+        measure(new RotatingDeck(cards), "RotatingDeck", false);
+        measure(new PackedDeck(cards), "PackedDeck", false);
+
+        measure(newDeck(deckPath), "Deck", true);
+        measure(new RotatingDeck(cards), "RotatingDeck", true);
+        measure(new PackedDeck(cards), "PackedDeck", true);
+    }
+
+    private static Deck newDeck(String deckPath) {
+        Deck deck = new Deck();
+        deck.setDeck(deckPath);
+        return deck;
+    }
+
+/*---------------------------------------------------------------------
+ |  Method VERIFY
+ |
+ |  Purpose:  Run two representations side by side for VERIFY_STEPS
+ |            steps and compare all 28 cards after every step.
+ |
+ |  Pre-condition: Both decks start from the same card order.
+ |
+ |  Post-condition: Both decks have been advanced. If they ever differ
+ |                  an IllegalStateException is thrown.
+ |
+ |  Parameters:
+ |      reference -- the deck whose order is taken as correct
+ |      candidate -- the deck being checked
+ |      name      -- the candidate's name, for the report
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    static void verify(SolitaireDeck reference, SolitaireDeck candidate, String name) {
+        for (int step = 0; step < VERIFY_STEPS; step++) {
+            runSteps(reference, 1);
+            runSteps(candidate, 1);
+            for (int i = 0; i < 28; i++) {
+                if (reference.cardAt(i) != candidate.cardAt(i)) {
+                    throw new IllegalStateException(name + " differs from Deck at step "
+                            + step + ", position " + i);
+                }
+            }
+        }
+        System.out.printf("%s matches Deck over %,d steps%n", name, VERIFY_STEPS);
+    }
+
+/*---------------------------------------------------------------------
+ |  Method VERIFY_VALUES
+ |
+ |  Purpose:  Draw VERIFY_STEPS keystream values from both decks with
+ |            nextValue() and compare them, which also covers any
+ |            representation that overrides nextValue().
+ |
+ |  Pre-condition: Both decks start from the same card order.
+ |
+ |  Post-condition: Both decks have been advanced. If the keystreams
+ |                  ever differ an IllegalStateException is thrown.
+ |
+ |  Parameters:
+ |      reference -- the deck whose keystream is taken as correct
+ |      candidate -- the deck being checked
+ |      name      -- the candidate's name, for the report
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    static void verifyValues(SolitaireDeck reference, SolitaireDeck candidate, String name) {
+        for (int value = 0; value < VERIFY_STEPS; value++) {
+            if (reference.nextValue() != candidate.nextValue()) {
+                throw new IllegalStateException(name + " keystream differs from Deck at value " + value);
+            }
+        }
+        System.out.printf("%s keystream matches Deck over %,d values%n", name, VERIFY_STEPS);
+    }
+
+/*---------------------------------------------------------------------
+ |  Method VERIFY_SKIP
+ |
+ |  Purpose:  Skip over runs of keystream values of growing length (0, 1,
+ |            2, 3, ...) on the candidate while drawing the same number
+ |            of values with nextValue() on the reference, and compare
+ |            all 28 cards after every run.
+ |
+ |  Pre-condition: Both decks start from the same card order.
+ |
+ |  Post-condition: Both decks have been advanced by VERIFY_STEPS values
+ |                  or a little more. If they ever differ an
+ |                  IllegalStateException is thrown.
+ |
+ |  Parameters:
+ |      reference -- the deck whose order is taken as correct
+ |      candidate -- the deck being checked
+ |      name      -- the candidate's name, for the report
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    static void verifySkip(SolitaireDeck reference, SolitaireDeck candidate, String name) {
+        long skipped = 0;
+        for (int run = 0; skipped < VERIFY_STEPS; run++) {
+            runValues(reference, run);
+            candidate.skip(run);
+            skipped += run;
+            for (int i = 0; i < 28; i++) {
+                if (reference.cardAt(i) != candidate.cardAt(i)) {
+                    throw new IllegalStateException(name + " skip differs from nextValue after "
+                            + skipped + " values, position " + i);
+                }
+            }
+        }
+        System.out.printf("%s skip matches nextValue over %,d values%n", name, skipped);
+    }
+
+/*---------------------------------------------------------------------
+ |  Method MEASURE
+ |
+ |  Purpose:  Run a few warm-up rounds so the JIT compiles the deck
+ |            methods, then time the measured rounds and print the best
+ |            and average number of steps (or keystream values) per
+ |            second.
+ |
+ |  Pre-condition: deck has been populated from a valid deck file.
+ |
+ |  Post-condition: The deck has been advanced; results are printed.
+ |
+ |  Parameters:
+ |      deck   -- the deck to time
+ |      name   -- its name, for the report
+ |      values -- true to time nextValue(), false to time single steps
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    static void measure(SolitaireDeck deck, String name, boolean values) {
+        long checksum = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            checksum += values ? runValues(deck, STEPS_PER_ROUND) : runSteps(deck, STEPS_PER_ROUND);
+        }
+
+        double best = 0;
+        double total = 0;
+        for (int round = 0; round < MEASURE_ROUNDS; round++) {
+            long start = System.nanoTime();
+            checksum += values ? runValues(deck, STEPS_PER_ROUND) : runSteps(deck, STEPS_PER_ROUND);
+            long elapsed = System.nanoTime() - start;
+            double stepsPerSecond = STEPS_PER_ROUND * 1e9 / elapsed;
+            best = Math.max(best, stepsPerSecond);
+            total += stepsPerSecond;
+        }
+
+        System.out.printf("%-14s %s/second: best %,.0f, average %,.0f (checksum %d)%n",
+                name, values ? "values" : "steps", best, total / MEASURE_ROUNDS, checksum);
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods RUN_STEPS and RUN_VALUES
+ |
+ |  Purpose:  RUN_STEPS applies the four Solitaire deck operations the
+ |            given number of times, adding up the top card after each
+ |            step. RUN_VALUES draws the given number of keystream
+ |            values and adds them up.
+ |
+ |  Pre-condition: deck has been populated from a valid deck file.
+ |
+ |  Post-condition: The deck has been advanced.
+ |
+ |  Parameters:
+ |      deck   -- the deck to advance
+ |      steps  -- number of steps to run
+ |      values -- number of keystream values to draw
+ |
+ |  Returns:  The sum, used as a checksum.
+ *-------------------------------------------------------------------*/
+    static long runSteps(SolitaireDeck deck, int steps) {
+        long sum = 0;
+        for (int i = 0; i < steps; i++) {
+            deck.moveJoker27();
+            deck.moveJoker28();
+            deck.tripleCut();
+            deck.countCut();
+            sum += deck.cardAt(0);
+        }
+        return sum;
+    }
+
+    static long runValues(SolitaireDeck deck, int values) {
+        long sum = 0;
+        for (int i = 0; i < values; i++) {
+            sum += deck.nextValue();
+        }
+        return sum;
+    }
+}
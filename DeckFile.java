@@ -0,0 +1,362 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class DeckFile
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Reading deck files, in either of two formats, and a
+ ||                   cache of the decks already read.
+ ||
+ ||                   The text format is the one the assignment uses: 28
+ ||                   card labels (AC .. KC, AD .. KD, JA, JB, in any
+ ||                   letter case) separated by white space; anything
+ ||                   after the 28th label is ignored. It is parsed in one
+ ||                   pass over the file's bytes, with no Scanner, String
+ ||                   or upper-casing per card, and the same pass checks
+ ||                   that every card appears exactly once.
+ ||
+ ||                   The binary format is BINARY_SIZE bytes:
+ ||                     0  MAGIC (4 bytes, "SLDK")
+ ||                     4  VERSION (1 byte)
+ ||                     5  the 28 cards, top first, one byte each
+ ||                    33  CRC-32 of bytes 0 .. 32 (4 bytes)
+ ||                   A file starting with MAGIC is read as binary; any
+ ||                   other file as text. main() converts text to binary.
+ ||
+ ||                   load() keeps every deck it reads, keyed by the file's
+ ||                   absolute path and checked against its modification
+ ||                   time and size, so a job that uses the same deck many
+ ||                   times parses it once. The decks are immutable
+ ||                   DeckStates, so the cache can be shared by threads.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  MAGIC, VERSION, BINARY_SIZE – the binary format.
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  None
+ ||
+ ||  Class Methods:  void main(String[] args)
+ ||                        – Converts a text deck file to binary.
+ ||
+ ||                   DeckState load(String deckFilePath)
+ ||                        – Reads a deck file, or returns it from the
+ ||                          cache if it has not changed.
+ ||
+ ||                   DeckState read(byte[] contents)
+ ||                        – Parses the contents of a deck file.
+ ||
+ ||                   byte[] toBinary(DeckState deck)
+ ||                        – The binary form of a deck.
+ ||
+ ||  Inst. Methods:  None
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+class DeckFile {
+    static final int MAGIC = 0x534c444b;    // "SLDK"
+    static final int VERSION = 1;
+    static final int BINARY_SIZE = 4 + 1 + DeckState.DECK_SIZE + 4;
+
+    // Card value of each label, indexed by labelKey(); 0 for no card
+    private static final byte[] LABELS = new byte[1 << 14];
+
+    static {
+        String ranks = "A23456789TJQK";
+        for (int rank = 0; rank < ranks.length(); rank++) {
+            LABELS[labelKey(ranks.charAt(rank), 'C')] = (byte) (rank + 1);
+            LABELS[labelKey(ranks.charAt(rank), 'D')] = (byte) (rank + 14);
+        }
+        LABELS[labelKey('J', 'A')] = 27;
+        LABELS[labelKey('J', 'B')] = 28;
+    }
+
+    // A deck file as last read, kept while the file is unchanged
+    private static final class Entry {
+        final long modified;
+        final long size;
+        final DeckState deck;
+
+        Entry(long modified, long size, DeckState deck) {
+            this.modified = modified;
+            this.size = size;
+            this.deck = deck;
+        }
+    }
+
+    private static final Map<Path, Entry> CACHE = new ConcurrentHashMap<>();
+
+/*---------------------------------------------------------------------
+ |  Method MAIN
+ |
+ |  Purpose:  Convert a deck file (text, or already binary) to the
+ |            binary format:  java DeckFile <deckFile> <binaryDeckFile>
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: The binary file has been written, or an error
+ |                  printed.
+ |
+ |  Parameters:
+ |      args -- the input and output paths
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: java DeckFile <deckFile> <binaryDeckFile>");
+            return;
+        }
+        try {
+            Files.write(Path.of(args[1]), toBinary(load(args[0])));
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+        System.out.println("Binary deck written to " + args[1]);
+    }
+
+/*---------------------------------------------------------------------
+ |  Method LOAD
+ |
+ |  Purpose:  Return the deck in a file, parsing the file only if it is
+ |            not in the cache or its modification time or size has
+ |            changed since it was cached. Two threads loading a
+ |            changed file at once both parse it and store equal decks,
+ |            so no lock is needed.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: The deck is in the cache.
+ |
+ |  Parameters:
+ |      deckFilePath -- the path to the deck file
+ |
+ |  Returns:  The deck.
+ |
+ |  Throws:   IOException if the file is missing, empty, cannot be read
+ |            or does not hold a deck; the message says which.
+ *-------------------------------------------------------------------*/
+    static DeckState load(String deckFilePath) throws IOException {
+        Path path = Path.of(deckFilePath).toAbsolutePath().normalize();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            throw new IOException("deck file not found");
+        }
+        long modified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+
+        Entry entry = CACHE.get(path);
+        if (entry != null && entry.modified == modified && entry.size == size) {
+            return entry.deck;
+        }
+        if (size == 0) {
+            throw new IOException("deck file is empty");
+        }
+        byte[] contents;
+        try {
+            contents = Files.readAllBytes(path);
+        } catch (IOException e) {
+            throw new IOException("deck file could not be read", e);
+        }
+        DeckState deck = read(contents);
+        CACHE.put(path, new Entry(modified, size, deck));
+        return deck;
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods READ, READ_BINARY and READ_TEXT
+ |
+ |  Purpose:  READ        -- parse a whole deck file in whichever format
+ |                           it is in.
+ |            READ_BINARY -- check the size, version and checksum, then
+ |                           the cards.
+ |            READ_TEXT   -- split the bytes into labels at white space
+ |                           and look each up in LABELS by its key, in
+ |                           one pass that also checks for unknown
+ |                           labels and repeated cards.
+ |
+ |            Both formats then check the cards with the same seen mask,
+ |            so the result is always a valid permutation of 1–28.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: contents is unchanged.
+ |
+ |  Parameters:
+ |      contents -- the bytes of the file
+ |
+ |  Returns:  The deck.
+ |
+ |  Throws:   IOException if contents is not a deck.
+ *-------------------------------------------------------------------*/
+    static DeckState read(byte[] contents) throws IOException {
+        if (contents.length == 0) {
+            throw new IOException("deck file is empty");
+        }
+        if (contents.length >= 4 && ByteBuffer.wrap(contents).getInt(0) == MAGIC) {
+            return readBinary(contents);
+        }
+        return readText(contents);
+    }
+
+    private static DeckState readBinary(byte[] contents) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(contents);
+        if (contents.length != BINARY_SIZE) {
+            throw new IOException("binary deck file has " + contents.length + " bytes, not " + BINARY_SIZE);
+        }
+        if (contents[4] != VERSION) {
+            throw new IOException("binary deck file has unknown version " + contents[4]);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(contents, 0, BINARY_SIZE - 4);
+        if ((int) crc.getValue() != buffer.getInt(BINARY_SIZE - 4)) {
+            throw new IOException("binary deck file is corrupt (checksum mismatch)");
+        }
+
+        int[] cards = new int[DeckState.DECK_SIZE];
+        int seen = 0;
+        for (int i = 0; i < cards.length; i++) {
+            int card = contents[5 + i];
+            seen = check(seen, card);
+            cards[i] = card;
+        }
+        return DeckState.wrap(cards);
+    }
+
+    private static DeckState readText(byte[] contents) throws IOException {
+        int[] cards = new int[DeckState.DECK_SIZE];
+        int count = 0;
+        int seen = 0;
+        int i = 0;
+        while (count < cards.length) {
+            while (i < contents.length && isSpace(contents[i])) {
+                i++;
+            }
+            if (i == contents.length) {
+                break;
+            }
+            int start = i;
+            while (i < contents.length && !isSpace(contents[i])) {
+                i++;
+            }
+
+            int card = lookUp(contents, start, i - start);
+            seen = check(seen, card);
+            cards[count++] = card;
+        }
+        if (count < cards.length) {
+            throw new IOException("deck file does not contain 28 cards");
+        }
+        return DeckState.wrap(cards);
+    }
+
+    // Adds card to the seen mask, or throws if it is not a card or is repeated
+    private static int check(int seen, int card) throws IOException {
+        if (card < 1 || card > DeckState.DECK_SIZE) {
+            throw new IOException("deck file contains an unknown card");
+        }
+        if ((seen & (1 << card)) != 0) {
+            throw new IOException("deck file contains a card more than once");
+        }
+        return seen | 1 << card;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0b;
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods LOOK_UP and LABEL_KEY
+ |
+ |  Purpose:  LOOK_UP   -- the card value of a label: two characters, or
+ |                         "10" and a suit, which is looked up as rank T.
+ |                         Letters are folded to upper case by clearing
+ |                         bit 5. Anything else is 0.
+ |            LABEL_KEY -- a 14-bit key for an ASCII rank and suit.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: None
+ |
+ |  Parameters:
+ |      contents -- the file's bytes
+ |      start    -- index of the label's first byte
+ |      length   -- number of bytes in the label
+ |      rank     -- rank character, upper case
+ |      suit     -- suit character, upper case
+ |
+ |  Returns:  The card value, 1–28, or 0; the key.
+ *-------------------------------------------------------------------*/
+    private static int lookUp(byte[] contents, int start, int length) {
+        int rank;
+        if (length == 2) {
+            rank = contents[start];
+        } else if (length == 3 && contents[start] == '1' && contents[start + 1] == '0') {
+            rank = 'T';
+        } else {
+            return 0;
+        }
+        int suit = contents[start + length - 1];
+        if (rank < 0 || suit < 0) {
+            return 0;      // Not ASCII
+        }
+        if (rank >= 'a' && rank <= 'z') {
+            rank &= ~0x20;
+        }
+        if (suit >= 'a' && suit <= 'z') {
+            suit &= ~0x20;
+        }
+        if (rank == 'T' && length == 2) {
+            return 0;      // "TC" is not a label; ten is written 10
+        }
+        return LABELS[labelKey(rank, suit)];
+    }
+
+    private static int labelKey(int rank, int suit) {
+        return rank << 7 | suit;
+    }
+
+/*---------------------------------------------------------------------
+ |  Method TO_BINARY
+ |
+ |  Purpose:  Encode a deck in the binary format.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: None
+ |
+ |  Parameters:
+ |      deck -- the deck
+ |
+ |  Returns:  BINARY_SIZE bytes.
+ *-------------------------------------------------------------------*/
+    static byte[] toBinary(DeckState deck) {
+        ByteBuffer buffer = ByteBuffer.allocate(BINARY_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        for (int i = 0; i < DeckState.DECK_SIZE; i++) {
+            buffer.put((byte) deck.cardAt(i));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, BINARY_SIZE - 4);
+        buffer.putInt((int) crc.getValue());
+        return buffer.array();
+    }
+}
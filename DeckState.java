@@ -0,0 +1,163 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class DeckState
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Immutable snapshot of a 28-card deck: a starting deck
+ ||                   read once from a deck file, or the state a keystream
+ ||                   generator had reached. Unlike Deck, nothing can
+ ||                   change it after it is made, so one DeckState can be
+ ||                   shared by any number of threads without locking,
+ ||                   and each of them forks its own KeystreamGenerator
+ ||                   from it. Every DeckState holds a valid permutation
+ ||                   of the cards 1–28.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  DECK_SIZE – number of cards (28).
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  None (see of and load)
+ ||
+ ||  Class Methods:  DeckState of(int[] cards)
+ ||                        – Snapshot of a card order.
+ ||
+ ||                   DeckState load(String deckFilePath)
+ ||                        – Reads a deck file.
+ ||
+ ||  Inst. Methods:  int cardAt(int position), int[] cards()
+ ||                        – Read the cards.
+ ||
+ ||                   Deck toDeck()
+ ||                        – A new mutable Deck in this state.
+ ||
+ ||                   KeystreamGenerator generator()
+ ||                        – A new generator starting from this state.
+ ||
+ ||                   boolean equals(Object other), int hashCode(),
+ ||                   String toString()
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.io.IOException;
+import java.util.Arrays;
+
+final class DeckState {
+    static final int DECK_SIZE = 28;
+
+    private final int[] cards;      // Never changed and never handed out
+
+    private DeckState(int[] cards) {
+        this.cards = cards;
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods OF and LOAD
+ |
+ |  Purpose:  OF   -- take a snapshot of a card order, checking in one
+ |                    pass that it holds each of the cards 1–28 exactly
+ |                    once.
+ |            LOAD -- read a deck file, in text or binary form, through
+ |                    the DeckFile cache, reporting problems by throwing
+ |                    instead of printing, so it can be used where there
+ |                    is no console.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: The argument is not kept; later changes to the array
+ |                  or the file do not affect the snapshot.
+ |
+ |  Parameters:
+ |      cards        -- 28 card values, top card first
+ |      deckFilePath -- the path to the deck file
+ |
+ |  Returns:  The snapshot.
+ |
+ |  Throws:   OF: IllegalArgumentException if cards is not a deck.
+ |            LOAD: IOException if the file is missing, empty, cannot be
+ |            read or does not hold a deck.
+ *-------------------------------------------------------------------*/
+    static DeckState of(int[] cards) {
+        if (cards.length != DECK_SIZE) {
+            throw new IllegalArgumentException("A deck has " + DECK_SIZE + " cards, not " + cards.length);
+        }
+        int[] copy = cards.clone();
+        int seen = 0;
+        for (int card : copy) {
+            if (card < 1 || card > DECK_SIZE || (seen & (1 << card)) != 0) {
+                throw new IllegalArgumentException("Not a deck: " + Arrays.toString(copy));
+            }
+            seen |= 1 << card;
+        }
+        return new DeckState(copy);
+    }
+
+    static DeckState load(String deckFilePath) throws IOException {
+        return DeckFile.load(deckFilePath);
+    }
+
+    // For DeckFile, which has already checked cards in its own single pass
+    static DeckState wrap(int[] cards) {
+        return new DeckState(cards);
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods CARD_AT, CARDS, TO_DECK and GENERATOR
+ |
+ |  Purpose:  CARD_AT   -- the card at a position (0 = top).
+ |            CARDS     -- a copy of the whole card order.
+ |            TO_DECK   -- a new Deck in this state, for code that works
+ |                         on a mutable deck.
+ |            GENERATOR -- a new KeystreamGenerator, in the deck
+ |                         representation chosen by -Dsolitaire.deck,
+ |                         that starts from this state. Each generator
+ |                         has its own deck, so generators forked from
+ |                         one DeckState can run on different threads.
+ |
+ |  Pre-condition: CARD_AT -- 0 <= position < 28.
+ |
+ |  Post-condition: The snapshot is unchanged.
+ |
+ |  Parameters:
+ |      position -- the position to read
+ |
+ |  Returns:  The card, a copy of the cards, the deck or the generator.
+ *-------------------------------------------------------------------*/
+    int cardAt(int position) {
+        return cards[position];
+    }
+
+    int[] cards() {
+        return cards.clone();
+    }
+
+    Deck toDeck() {
+        Deck deck = new Deck();
+        deck.setDeck(cards);
+        return deck;
+    }
+
+    KeystreamGenerator generator() {
+        return new KeystreamGenerator(SolitaireDeck.select(toDeck()));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof DeckState && Arrays.equals(cards, ((DeckState) other).cards);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(cards);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(cards);
+    }
+}
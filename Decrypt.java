@@ -1,6 +1,15 @@
 import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
 
 class Decrypt {
+    static final int CHUNK_SIZE = 4096;   // Keystream values generated at a time
 /*---------------------------------------------------------------------
  |  Method MAIN
  |
@@ -8,96 +17,456 @@ class Decrypt {
  |            command-line arguments specifying the deck file and the
  |            encrypted message file, initializes the Deck and Message
  |            objects, and runs the decryption method to output
- |            decrypted messages to the console.
+ |            decrypted messages to the console. The deck representation
+ |            can be chosen with -Dsolitaire.deck (see SolitaireDeck.select).
+ |            With -stream the encrypted file is read and decrypted a
+ |            chunk at a time instead of being loaded into a Message.
+ |            With -mmap it is read through memory mappings, in either
+ |            mode. With -out <file> the decrypted messages are written
+ |            to that file instead of the console. With -line <n> only
+ |            line n (counting from 1) is decrypted, using the
+ |            checkpoint index Encrypt -index wrote next to the
+ |            encrypted file. If -Dsolitaire.cache names a directory,
+ |            the keystream is read from a KeystreamCache there. With
+ |            -records the file is decrypted as the records written by
+ |            Encrypt -records, in parallel (see RecordCipher). With
+ |            -pipeline the file is streamed through separate reader,
+ |            keystream and combining threads (see Pipeline).
  |
- |  Pre-condition: The program requires exactly two command line arguments:
+ |  Pre-condition: The program requires exactly two command line arguments,
+ |                 optionally preceded by -stream, -mmap, -out <file>,
+ |                 and one of -line <n>, -records or -pipeline:
  |                 1) the path to a valid deck file, and
  |                 2) the path to a valid encrypted message file.
  |
  |  Post-condition: The deck and message objects are initialized,
  |                  and the messages are decrypted and printed to
- |                  standard output.
+ |                  standard output or written to the -out file.
  |
  |  Parameters:
  |      args -- an array of Strings from the command line:
- |              args[0] = path to the deck file
- |              args[1] = path to the encrypted message file
+ |              optional flags, then
+ |              path to the deck file,
+ |              path to the encrypted message file
  |
  |  Returns:  None (void)
  *-------------------------------------------------------------------*/
 
     public static void main(String[] args) {
-        if (args.length != 2) {
-            System.out.println("Usage: java Decrypt <deckFile> <encryptedMessageFile>");
+        boolean stream = false;
+        boolean mapped = false;
+        String outputPath = null;
+        long line = 0;
+        boolean records = false;
+        boolean pipeline = false;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-stream": stream = true; break;
+                case "-mmap": mapped = true; break;
+                case "-out":
+                    if (i + 1 < args.length) {
+                        outputPath = args[++i];
+                    } else {
+                        files.clear();   // forces the usage message
+                        i = args.length;
+                    }
+                    break;
+                case "-records": records = true; break;
+                case "-pipeline": pipeline = true; break;
+                case "-line":
+                    line = i + 1 < args.length ? parseLine(args[++i]) : -1;
+                    if (line < 1) {
+                        files.clear();
+                        i = args.length;
+                    }
+                    break;
+                default: files.add(args[i]);
+            }
+        }
+
+        if (files.size() != 2 || (line > 0 && records) || (pipeline && (line > 0 || records))) {
+            System.out.println("Usage: java Decrypt [-stream] [-mmap] [-out <file>] [-line <n> | -records | -pipeline] <deckFile> <encryptedMessageFile>");
             return;
         }
 
-        String deckPath= args[0];
-        String encryptedMsgPath = args[1];
+        String deckPath= files.get(0);
+        String encryptedMsgPath = files.get(1);
 
         Deck deck = new Deck();
         deck.setDeck(deckPath);
+        if (deck.getDeck() == null) {
+            return;         // readDeckFile has reported the error
+        }
+
+        if (line > 0) {
+            decryptLine(deck, encryptedMsgPath, line - 1, outputPath);
+            return;
+        }
+
+        if (records) {
+            decryptRecords(deck, encryptedMsgPath, mapped, outputPath);
+            return;
+        }
+
+        KeystreamGenerator keystream = KeystreamCache.generator(deck);
+        if (pipeline) {
+            decryptPipeline(keystream, encryptedMsgPath, mapped, outputPath);
+            return;
+        }
+
+        if (stream) {
+            decryptStream(keystream, encryptedMsgPath, mapped, outputPath);
+            return;
+        }
 
+        if (!MessageStream.canRead(encryptedMsgPath)) {
+            return;         // Before the output file is opened
+        }
         Message encryptedMsg = new Message();
-        encryptedMsg.setMessage(encryptedMsgPath);
+        if (mapped) {
+            encryptedMsg.setMessageMapped(encryptedMsgPath);
+        } else {
+            encryptedMsg.setMessage(encryptedMsgPath);
+        }
 
-        decryptMessages(deck, encryptedMsg);
+        decryptMessages(keystream, encryptedMsg, outputPath);
     }
 /*---------------------------------------------------------------------
  |  Method DECRYPT_MESSAGES
  |
- |  Purpose:  Decrypt a list of numeric messages using a Deck and the
- |            Solitaire keystream algorithm. This method generates a
- |            keystream matching the length of each message, subtracts
- |            the keystream values from the encrypted numbers, adjusts
- |            for modulo 26 arithmetic, and prints the resulting
- |            decrypted messages to the console.
+ |  Purpose:  Decrypt a list of numeric messages using the Solitaire
+ |            keystream. This method draws keystream values from the
+ |            generator CHUNK_SIZE at a time and subtracts them, with
+ |            the modulo 26 adjustment, in place from the encrypted
+ |            values in the Message's own letter array, then writes
+ |            that part of the array straight away as bytes through a
+ |            LetterWriter, either to the console (under a heading) or
+ |            to an output file. No copy of the messages is made and
+ |            each value is visited once.
  |
- |  Pre-condition: The Deck object has been initialized and populated
- |                 from a valid deck file. The Message object contains
- |                 one or more encrypted messages represented as numeric
- |                 arrays.
+ |  Pre-condition: The keystream generator has not been used for
+ |                 anything else. The Message object contains
+ |                 one or more encrypted messages.
  |
  |  Post-condition: The encrypted messages are transformed back into
- |                  letters and printed to standard output. No class
- |                  fields or external data are modified.
+ |                  letters and printed to standard output or written to
+ |                  outputPath. The Message now holds the plaintext.
  |
  |  Parameters:
- |      deck -- a Deck object containing the card ordering to generate
- |              the keystream.
- |      msg  -- a Message object containing the numeric representation
- |              of the encrypted messages.
+ |      keystream  -- the KeystreamGenerator supplying the keystream.
+ |      msg        -- a Message object containing the numeric
+ |                    representation of the encrypted messages.
+ |      outputPath -- file to write the decrypted messages to, or null
+ |                    for the console.
  |
  |  Returns:  None (void)
  *-------------------------------------------------------------------*/
-    static void decryptMessages(Deck deck, Message msg) {
+    static void decryptMessages(KeystreamGenerator keystream, Message msg, String outputPath) {
 
-        Keystream keystream = new Keystream();
-        keystream.setKeyStream(msg.getNumbers(), deck);
-        int[][] keystreamValues = keystream.getKeystream(); 
-        int[][] encryptedNumbers = new int[msg.getNumbers().size()][];
-        List<int[]> messagesNumbers = msg.getNumbers(); 
-        encryptedNumbers = new int[messagesNumbers.size()][];
+        byte[] keyChunk = new byte[CHUNK_SIZE];
+        byte[] letters = msg.letters();
 
-        for (int i = 0; i < messagesNumbers.size(); i++) {
-            int[] numbersArray = messagesNumbers.get(i);         
-            encryptedNumbers[i] = new int[numbersArray.length]; 
+        try (LetterWriter writer = openOutput(outputPath)) {
+            for (int i = 0; i < msg.lineCount(); i++) {
+                int lineEnd = msg.lineStart(i) + msg.lineLength(i);
+                for (int start = msg.lineStart(i); start < lineEnd; start += CHUNK_SIZE) {
+                    int length = Math.min(CHUNK_SIZE, lineEnd - start);
+                    keystream.fill(keyChunk, 0, length);
+                    Combiner.INSTANCE.decrypt(letters, start, keyChunk, 0, length);
+                    writer.write(letters, start, length);
+                }
+                writer.newLine();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error writing decrypted messages");
+            return;
+        }
+        reportOutput(outputPath);
+    }
 
-            for (int j = 0; j < numbersArray.length; j++) {
-                encryptedNumbers[i][j] = numbersArray[j];        
+/*---------------------------------------------------------------------
+ |  Method DECRYPT_STREAM
+ |
+ |  Purpose:  Decrypt an encrypted message file without loading it into
+ |            memory. MessageStream delivers the letters of each line in
+ |            chunks; each chunk is combined with the same number of
+ |            keystream values and written through a LetterWriter to the
+ |            console or an output file. The output is the same as
+ |            decryptMessages produces.
+ |
+ |  Pre-condition: keystream has not been used for anything else.
+ |
+ |  Post-condition: The decrypted lines have been printed or written to
+ |                  outputPath. Memory use does not depend on the size
+ |                  of the encrypted file.
+ |
+ |  Parameters:
+ |      keystream        -- the KeystreamGenerator supplying the keystream
+ |      encryptedMsgPath -- path to the encrypted message file
+ |      mapped           -- true to read the file through memory mappings
+ |      outputPath       -- file to write the decrypted messages to, or
+ |                          null for the console
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    static void decryptStream(KeystreamGenerator keystream, String encryptedMsgPath,
+                              boolean mapped, String outputPath) {
+        if (!MessageStream.canRead(encryptedMsgPath)) {
+            return;
+        }
+
+        byte[] keyChunk = new byte[MessageStream.CHUNK_SIZE];
+
+        try (LetterWriter writer = openOutput(outputPath)) {
+            LineHandler handler = new LineHandler() {
+                public void letters(byte[] values, int len) throws IOException {
+                    keystream.fill(keyChunk, 0, len);
+                    decryptChunk(values, keyChunk, len);
+                    writer.write(values, 0, len);
+                }
+
+                public void endOfLine() throws IOException {
+                    writer.newLine();
+                }
+            };
+            if (mapped) {
+                MessageStream.readMapped(encryptedMsgPath, handler);
+            } else {
+                MessageStream.read(encryptedMsgPath, handler);
             }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error decrypting file: " + encryptedMsgPath);
+            return;
         }
+        reportOutput(outputPath);
+    }
 
-        System.out.println("Decrypted Messages:");
-        System.out.println("===================");
-        for (int i = 0; i < encryptedNumbers.length; i++) {
-            for (int j = 0; j < encryptedNumbers[i].length; j++) {
-                int decryptedValue = encryptedNumbers[i][j] - keystreamValues[i][j];
-                if (decryptedValue <= 0) decryptedValue += 26; 
-                System.out.print(msg.numberToLetter(decryptedValue));
+/*---------------------------------------------------------------------
+ |  Method DECRYPT_PIPELINE
+ |
+ |  Purpose:  Decrypt an encrypted message file like decryptStream, but
+ |            with the reading, the keystream generation and the
+ |            combining and writing each on their own thread (see
+ |            Pipeline). The output is the same as decryptStream's.
+ |
+ |  Pre-condition: keystream has not been used for anything else.
+ |
+ |  Post-condition: The decrypted lines have been printed or written to
+ |                  outputPath. keystream has been used up.
+ |
+ |  Parameters:
+ |      keystream        -- the KeystreamGenerator supplying the keystream
+ |      encryptedMsgPath -- path to the encrypted message file
+ |      mapped           -- true to read the file through memory mappings
+ |      outputPath       -- file to write the decrypted messages to, or
+ |                          null for the console
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    static void decryptPipeline(KeystreamGenerator keystream, String encryptedMsgPath,
+                                boolean mapped, String outputPath) {
+        if (!MessageStream.canRead(encryptedMsgPath)) {
+            return;
+        }
+
+        try (LetterWriter writer = openOutput(outputPath)) {
+            Pipeline.run(encryptedMsgPath, mapped, keystream, false, writer, null);
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error decrypting file: " + encryptedMsgPath);
+            return;
+        }
+        reportOutput(outputPath);
+    }
+
+/*---------------------------------------------------------------------
+ |  Method DECRYPT_RECORDS
+ |
+ |  Purpose:  Decrypt a file written by Encrypt -records. MessageStream
+ |            delivers its lines to a RecordCipher, which rebuilds each
+ |            record's deck from the nonce at the start of the line,
+ |            decrypts batches of records in parallel and writes the
+ |            plaintext in order to the console or an output file.
+ |
+ |  Pre-condition: deck has been populated from the deck file the
+ |                 records were encrypted with.
+ |
+ |  Post-condition: The decrypted records have been printed or written
+ |                  to outputPath. deck is unchanged.
+ |
+ |  Parameters:
+ |      deck             -- the base deck
+ |      encryptedMsgPath -- path to the encrypted records
+ |      mapped           -- true to read the file through memory mappings
+ |      outputPath       -- file to write the decrypted records to, or
+ |                          null for the console
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    static void decryptRecords(Deck deck, String encryptedMsgPath, boolean mapped,
+                               String outputPath) {
+        if (!MessageStream.canRead(encryptedMsgPath)) {
+            return;
+        }
+
+        try (LetterWriter writer = openOutput(outputPath)) {
+            RecordCipher records = new RecordCipher(deck.getDeck(), false, writer, null);
+            if (mapped) {
+                MessageStream.readMapped(encryptedMsgPath, records);
+            } else {
+                MessageStream.read(encryptedMsgPath, records);
+            }
+            records.finish();
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error decrypting file: " + encryptedMsgPath + ": " + e.getMessage());
+            return;
+        }
+        reportOutput(outputPath);
+    }
+
+/*---------------------------------------------------------------------
+ |  Method DECRYPT_LINE
+ |
+ |  Purpose:  Decrypt one line of an encrypted file without replaying
+ |            the keystream for the lines before it. The line's byte
+ |            offset and keystream position are looked up in the
+ |            checkpoint index next to the file, the keystream is
+ |            restored from the nearest saved deck, and the line is read
+ |            from its offset in chunks until the end of the line.
+ |
+ |  Pre-condition: deck has been populated from the deck file the file
+ |                 was encrypted with, and Encrypt -index wrote
+ |                 encryptedMsgPath + ".idx" together with the file.
+ |
+ |  Post-condition: The decrypted line has been printed or written to
+ |                  outputPath. If the index is missing, out of date or
+ |                  belongs to another deck, an error message is
+ |                  printed instead.
+ |
+ |  Parameters:
+ |      deck             -- the deck read from the deck file
+ |      encryptedMsgPath -- path to the encrypted message file
+ |      line             -- the line to decrypt, counting from 0
+ |      outputPath       -- file to write the decrypted line to, or null
+ |                          for the console
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    static void decryptLine(Deck deck, String encryptedMsgPath, long line, String outputPath) {
+        String indexPath = encryptedMsgPath + CheckpointIndex.SUFFIX;
+        if (!new File(indexPath).exists()) {
+            System.out.println("Error: checkpoint index not found: " + indexPath);
+            return;
+        }
+
+        try (CheckpointIndex index = CheckpointIndex.open(indexPath);
+             FileChannel encrypted = FileChannel.open(Paths.get(encryptedMsgPath))) {
+            if (encrypted.size() != index.dataLength()) {
+                System.out.println("Error: checkpoint index is out of date: " + indexPath);
+                return;
+            }
+            if (!Arrays.equals(index.checkpoint(0), deck.getDeck())) {
+                System.out.println("Error: checkpoint index was not made with this deck");
+                return;
             }
-            System.out.println();
+            if (line >= index.lineCount()) {
+                System.out.println("Error: line " + (line + 1) + " is past the end of the file ("
+                        + index.lineCount() + " lines)");
+                return;
+            }
+
+            KeystreamGenerator keystream = index.keystreamAt(index.linePosition(line));
+            long offset = index.lineOffset(line);
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+            byte[] values = new byte[CHUNK_SIZE];
+            byte[] keyChunk = new byte[CHUNK_SIZE];
+
+            try (LetterWriter writer = openOutput(outputPath)) {
+                boolean endOfLine = false;
+                while (!endOfLine) {
+                    chunk.clear();
+                    int read = encrypted.read(chunk, offset);
+                    if (read <= 0) {
+                        break;
+                    }
+                    int length = 0;
+                    while (length < read) {
+                        int letter = chunk.get(length) - 'A' + 1;
+                        if (letter < 1 || letter > 26) {
+                            endOfLine = true;
+                            break;
+                        }
+                        values[length++] = (byte) letter;
+                    }
+                    keystream.fill(keyChunk, 0, length);
+                    decryptChunk(values, keyChunk, length);
+                    writer.write(values, 0, length);
+                    offset += length;
+                }
+                writer.newLine();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error decrypting line " + (line + 1) + ": " + e.getMessage());
+            return;
+        }
+        reportOutput(outputPath);
+    }
+
+    private static long parseLine(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods DECRYPT_CHUNK, OPEN_OUTPUT and REPORT_OUTPUT
+ |
+ |  Purpose:  DECRYPT_CHUNK -- subtract each keystream value from the
+ |                             encrypted value at the same index, adding
+ |                             26 to results of 0 or less, replacing the
+ |                             encrypted values with the plaintext ones
+ |                             (see Combiner).
+ |            OPEN_OUTPUT   -- open the file writer, or a console writer
+ |                             with the heading already written.
+ |            REPORT_OUTPUT -- say where a file was written.
+ |
+ |  Pre-condition: DECRYPT_CHUNK -- values and key hold at least len
+ |                 values in the range 1–26.
+ |
+ |  Post-condition: As described above.
+ |
+ |  Parameters:
+ |      values     -- encrypted values, overwritten with the result
+ |      key        -- keystream values
+ |      len        -- number of values to combine
+ |      outputPath -- the output file, or null for the console
+ |
+ |  Returns:  OPEN_OUTPUT: the writer; the others: None (void)
+ |
+ |  Throws:   OPEN_OUTPUT: IOException if the file cannot be opened.
+ *-------------------------------------------------------------------*/
+    static void decryptChunk(byte[] values, byte[] key, int len) {
+        Combiner.INSTANCE.decrypt(values, 0, key, 0, len);
+    }
+
+    private static LetterWriter openOutput(String outputPath) throws IOException {
+        if (outputPath != null) {
+            return LetterWriter.toFile(outputPath);
+        }
+        LetterWriter console = LetterWriter.toConsole();
+        console.writeText("Decrypted Messages:");
+        console.newLine();
+        console.writeText("===================");
+        console.newLine();
+        return console;
+    }
+
+    private static void reportOutput(String outputPath) {
+        if (outputPath != null) {
+            System.out.println("Decrypted message written to " + outputPath);
         }
     }
 
-}
\ No newline at end of file
+}
@@ -1,115 +1,422 @@
 import java.util.List;
-import java.io.FileWriter;
-import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 
 class Encrypt {
+    static final int CHUNK_SIZE = 4096;   // Keystream values generated at a time
+    static final String OUTPUT_FILE = "encryptedMessage.txt";
 /*---------------------------------------------------------------------
  |  Method MAIN
  |
  |  Purpose:  Main method for the encryption program. This method reads
  |            command-line arguments specifying the deck file and the
  |            plaintext message file, initializes the Deck and Message
- |            objects, generates the keystream using the Deck, and
+ |            objects, creates a keystream generator on the Deck, and
  |            invokes the encryption process to transform messages into
- |            encrypted form.
+ |            encrypted form. The deck representation used for the
+ |            keystream can be chosen with -Dsolitaire.deck (see
+ |            SolitaireDeck.select). With -stream the message file is
+ |            read, encrypted and written a chunk at a time instead of
+ |            being loaded into a Message first. With -mmap the message
+ |            file is read through memory mappings instead of a
+ |            Scanner or Reader, in either mode. With -quiet the
+ |            ciphertext is only written to the file, not echoed to
+ |            the console. With -index a checkpoint index is written
+ |            next to the output (see IndexWriter), which lets Decrypt
+ |            -line decrypt a single line without replaying the lines
+ |            before it. If -Dsolitaire.cache names a directory, the
+ |            keystream is read from a KeystreamCache there (except with
+ |            -index). With -records every line is encrypted as an
+ |            independent record with its own nonce, in parallel (see
+ |            RecordCipher); it cannot be combined with -index. With
+ |            -pipeline the file is streamed through separate reader,
+ |            keystream and combining threads (see Pipeline); it cannot
+ |            be combined with -index or -records.
  |
- |  Pre-condition: The program is executed with exactly two arguments:
+ |  Pre-condition: The program is executed with exactly two arguments,
+ |                 optionally preceded by -stream, -mmap, -quiet, -index,
+ |                 -records and/or -pipeline:
  |                 1) the path to a valid deck file, and
  |                 2) the path to a valid plaintext message file.
  |
- |  Post-condition: The deck and message objects are initialized, the
- |                  keystream is generated, and the messages are
- |                  encrypted. The encrypted output is prepared for
- |                  further processing or storage.
+ |  Post-condition: The deck and message objects are initialized, and
+ |                  the messages are encrypted with keystream drawn
+ |                  from the deck as it is needed. The encrypted output
+ |                  is prepared for further processing or storage.
  |
  |  Parameters:
  |      args -- an array of Strings from the command line:
- |              args[0] = path to the deck file
- |              args[1] = path to the plaintext message file
+ |              optional flags, then
+ |              path to the deck file,
+ |              path to the plaintext message file
  |
  |  Returns:  None (void)
  *-------------------------------------------------------------------*/
 
     public static void main(String[] args) {
-        if (args.length != 2) {
-            System.out.println("Usage: java Encrypt <deckFile> <messageFile>");
+        boolean stream = false;
+        boolean mapped = false;
+        boolean echo = true;
+        boolean indexed = false;
+        boolean records = false;
+        boolean pipeline = false;
+        List<String> files = new ArrayList<>();
+        for (String arg : args) {
+            switch (arg) {
+                case "-stream": stream = true; break;
+                case "-mmap": mapped = true; break;
+                case "-quiet": echo = false; break;
+                case "-index": indexed = true; break;
+                case "-records": records = true; break;
+                case "-pipeline": pipeline = true; break;
+                default: files.add(arg);
+            }
+        }
+
+        if (files.size() != 2 || (indexed && records) || (pipeline && (indexed || records))) {
+            System.out.println("Usage: java Encrypt [-stream] [-mmap] [-quiet] [-index | -records | -pipeline] <deckFile> <messageFile>");
             return;
         }
 
-        String deckPath = args[0];
-        String messagePath = args[1];
+        String deckPath = files.get(0);
+        String messagePath = files.get(1);
 
         Deck deck = new Deck();
         deck.setDeck(deckPath);
+        if (deck.getDeck() == null) {
+            return;         // readDeckFile has reported the error
+        }
 
-        Message messages = new Message();
-        messages.setMessage(messagePath);
+        if (records) {
+            encryptRecords(messagePath, deck, mapped, echo);
+            return;
+        }
+
+        // An index needs deck snapshots, so it is never built from the cache
+        KeystreamGenerator keystream = indexed ? new KeystreamGenerator(SolitaireDeck.select(deck))
+                                               : KeystreamCache.generator(deck);
+
+        if (pipeline) {
+            encryptPipeline(messagePath, keystream, mapped, echo);
+            return;
+        }
+
+        if (stream) {
+            encryptStream(messagePath, keystream, mapped, echo, indexed);
+            return;
+        }
 
-        Keystream keystream = new Keystream();
-        keystream.encryptionAlgorithm(messages.getNumbers(), deck);
+        if (!MessageStream.canRead(messagePath)) {
+            return;         // Before encryptedMessage.txt is opened
+        }
+        Message messages = new Message();
+        if (mapped) {
+            messages.setMessageMapped(messagePath);
+        } else {
+            messages.setMessage(messagePath);
+        }
 
-        encryptMessages(messages, keystream);
+        encryptMessages(messages, keystream, echo, indexed);
 
     }
 /*---------------------------------------------------------------------
  |  Method ENCRYPT_MESSAGES
  |
- |  Purpose:  Encrypt a list of numeric messages using a Keystream
+ |  Purpose:  Encrypt a list of numeric messages using a keystream
  |            generated from a Deck. Each numeric message is combined
  |            with the corresponding keystream values using modular
- |            arithmetic (mod 26) to produce encrypted letters. The
- |            resulting encrypted messages are printed to the console
- |            and written to a file named "encryptedMessage.txt".
+ |            arithmetic (mod 26) to produce encrypted letters. Each
+ |            line is copied out of the Message's letter array a chunk
+ |            at a time, so the Message itself is not changed. The
+ |            keystream is drawn CHUNK_SIZE values at a time into one
+ |            reusable buffer, so its memory use does not depend on the
+ |            size of the input. The encrypted letters are written as
+ |            bytes through a LetterWriter to the file
+ |            "encryptedMessage.txt" and, if echo is set, to the
+ |            console. If indexed is set the keystream is drawn through
+ |            an IndexWriter, which writes "encryptedMessage.txt.idx".
  |
  |  Pre-condition: The Message object contains one or more plaintext
- |                 messages represented as numeric arrays. The Keystream
- |                 object has been initialized and contains keystream
- |                 values matching the length of each message.
+ |                 messages as letter values. The keystream
+ |                 generator has not been used for anything else.
  |
- |  Post-condition: The messages are encrypted and output to both
- |                  standard output and the file "encryptedMessage.txt".
- |                  No original message data is modified.
+ |  Post-condition: The messages are encrypted and output to the file
+ |                  "encryptedMessage.txt" (and standard output if echo
+ |                  is set). No original message data is modified.
  |
  |  Parameters:
  |      message   -- a Message object containing numeric representations
  |                   of plaintext messages.
- |      keystream -- a Keystream object containing the keystream values
- |                   for encryption.
+ |      keystream -- the KeystreamGenerator supplying the keystream
+ |                   values for encryption.
+ |      echo      -- true to also print the encrypted messages.
+ |      indexed   -- true to also write a checkpoint index.
  |
  |  Returns:  None (void)
  *-------------------------------------------------------------------*/
-    static void encryptMessages(Message message, Keystream keystream) {
-        List<int[]> msgNumbers = message.getNumbers();
-        String[][] encryptedMessage = new String[msgNumbers.size()][];
-
-        for (int i = 0; i < msgNumbers.size(); i++) {
-            int[] numbers = msgNumbers.get(i); 
-            encryptedMessage[i] = new String[numbers.length];
-
-            for (int j = 0; j < numbers.length; j++) {
-                int encryptedNumbers = numbers[j] + keystream.getKeystream()[i][j];
-                int modSum = encryptedNumbers % 26;
-                if (modSum == 0) modSum = 26;
-                encryptedMessage[i][j] = message.numberToLetter(modSum);
+    static void encryptMessages(Message message, KeystreamGenerator keystream,
+                                boolean echo, boolean indexed) {
+        byte[] letters = message.letters();
+        byte[] values = new byte[CHUNK_SIZE];
+        byte[] keyChunk = new byte[CHUNK_SIZE];
+
+        try (LetterWriter writer = LetterWriter.toFile(OUTPUT_FILE);
+             LetterWriter console = echo ? LetterWriter.toConsole() : null;
+             IndexWriter index = indexed ? openIndex(keystream) : null) {
+            if (console != null) {
+                writeHeading(console);
+            }
+
+            for (int i = 0; i < message.lineCount(); i++) {
+                int lineStart = message.lineStart(i);
+                int lineLength = message.lineLength(i);
+
+                for (int start = 0; start < lineLength; start += CHUNK_SIZE) {
+                    int length = Math.min(CHUNK_SIZE, lineLength - start);
+                    System.arraycopy(letters, lineStart + start, values, 0, length);
+                    if (index != null) {
+                        index.fill(keyChunk, 0, length);
+                    } else {
+                        keystream.fill(keyChunk, 0, length);
+                    }
+                    encryptChunk(values, keyChunk, length);
+
+                    writer.write(values, 0, length);
+                    if (console != null) {
+                        console.write(values, 0, length);
+                    }
+                }
+                writer.newLine();
+                if (console != null) {
+                    console.newLine();
+                }
+                if (index != null) {
+                    index.endOfLine();
+                }
             }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error writing to file");
+            return;
+        }
+        reportOutput(indexed);
+    }
+/*---------------------------------------------------------------------
+ |  Method ENCRYPT_STREAM
+ |
+ |  Purpose:  Encrypt a message file without loading it into memory.
+ |            MessageStream delivers the cleaned letters of each line in
+ |            chunks; each chunk is combined with the same number of
+ |            keystream values and written straight to
+ |            "encryptedMessage.txt" and, if echo is set, to standard
+ |            output. The output, and the index if indexed is set, is
+ |            byte-for-byte the same as encryptMessages produces.
+ |
+ |  Pre-condition: keystream has not been used for anything else.
+ |
+ |  Post-condition: The encrypted lines have been written to the file
+ |                  (and printed if echo is set). Memory use does not
+ |                  depend on the size of the message file.
+ |
+ |  Parameters:
+ |      messagePath -- path to the plaintext message file
+ |      keystream   -- the KeystreamGenerator supplying the keystream
+ |      mapped      -- true to read the file through memory mappings
+ |      echo        -- true to also print the encrypted messages
+ |      indexed     -- true to also write a checkpoint index
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    static void encryptStream(String messagePath, KeystreamGenerator keystream,
+                              boolean mapped, boolean echo, boolean indexed) {
+        if (!MessageStream.canRead(messagePath)) {
+            return;
         }
 
-        try (PrintWriter writer = new PrintWriter(new FileWriter("encryptedMessage.txt"))) {
-            System.out.println("Encrypted Messages:");
-            System.out.println("===================");
-            for (int i = 0; i < encryptedMessage.length; i++) {
-                for (int j = 0; j < encryptedMessage[i].length; j++) {
-                    writer.print(encryptedMessage[i][j]);
+        byte[] keyChunk = new byte[MessageStream.CHUNK_SIZE];
+        try (LetterWriter writer = LetterWriter.toFile(OUTPUT_FILE);
+             LetterWriter console = echo ? LetterWriter.toConsole() : null;
+             IndexWriter index = indexed ? openIndex(keystream) : null) {
+            if (console != null) {
+                writeHeading(console);
+            }
+
+            LineHandler handler = new LineHandler() {
+                public void letters(byte[] values, int len) throws IOException {
+                    if (index != null) {
+                        index.fill(keyChunk, 0, len);
+                    } else {
+                        keystream.fill(keyChunk, 0, len);
+                    }
+                    encryptChunk(values, keyChunk, len);
+                    writer.write(values, 0, len);
+                    if (console != null) {
+                        console.write(values, 0, len);
+                    }
+                }
+
+                public void endOfLine() throws IOException {
+                    writer.newLine();
+                    if (console != null) {
+                        console.newLine();
+                    }
+                    if (index != null) {
+                        index.endOfLine();
+                    }
                 }
-                System.out.println(String.join("", encryptedMessage[i]));
-                writer.println();
+            };
+            if (mapped) {
+                MessageStream.readMapped(messagePath, handler);
+            } else {
+                MessageStream.read(messagePath, handler);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error writing to file");
+            return;
+        }
+        reportOutput(indexed);
+    }
+/*---------------------------------------------------------------------
+ |  Method ENCRYPT_PIPELINE
+ |
+ |  Purpose:  Encrypt a message file like encryptStream, but with the
+ |            reading and cleaning, the keystream generation and the
+ |            combining and writing each on their own thread (see
+ |            Pipeline), so on a multi-core machine the run takes
+ |            little longer than generating the keystream alone. The
+ |            output is byte-for-byte the same as encryptStream's.
+ |
+ |  Pre-condition: keystream has not been used for anything else.
+ |
+ |  Post-condition: The encrypted lines have been written to the file
+ |                  (and printed if echo is set). keystream has been
+ |                  used up.
+ |
+ |  Parameters:
+ |      messagePath -- path to the plaintext message file
+ |      keystream   -- the KeystreamGenerator supplying the keystream
+ |      mapped      -- true to read the file through memory mappings
+ |      echo        -- true to also print the encrypted messages
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    static void encryptPipeline(String messagePath, KeystreamGenerator keystream,
+                                boolean mapped, boolean echo) {
+        if (!MessageStream.canRead(messagePath)) {
+            return;
+        }
+
+        try (LetterWriter writer = LetterWriter.toFile(OUTPUT_FILE);
+             LetterWriter console = echo ? LetterWriter.toConsole() : null) {
+            if (console != null) {
+                writeHeading(console);
+            }
+            Pipeline.run(messagePath, mapped, keystream, true, writer, console);
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error writing to file");
+            return;
+        }
+        reportOutput(false);
+    }
+/*---------------------------------------------------------------------
+ |  Method ENCRYPT_RECORDS
+ |
+ |  Purpose:  Encrypt a message file in record mode: MessageStream
+ |            delivers the cleaned lines to a RecordCipher, which gives
+ |            each line a nonce and its own keystream, encrypts batches
+ |            of lines in parallel, and writes them in order to
+ |            "encryptedMessage.txt" and, if echo is set, to the
+ |            console. The whole file is streamed in either mode.
+ |
+ |  Pre-condition: deck has been populated from a valid deck file.
+ |
+ |  Post-condition: Every kept line has been written as its nonce
+ |                  followed by its ciphertext. deck is unchanged.
+ |
+ |  Parameters:
+ |      messagePath -- path to the plaintext message file
+ |      deck        -- the base deck
+ |      mapped      -- true to read the file through memory mappings
+ |      echo        -- true to also print the encrypted records
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    static void encryptRecords(String messagePath, Deck deck, boolean mapped, boolean echo) {
+        if (!MessageStream.canRead(messagePath)) {
+            return;
+        }
+
+        try (LetterWriter writer = LetterWriter.toFile(OUTPUT_FILE);
+             LetterWriter console = echo ? LetterWriter.toConsole() : null) {
+            if (console != null) {
+                writeHeading(console);
+            }
+
+            RecordCipher records = new RecordCipher(deck.getDeck(), true, writer, console);
+            if (mapped) {
+                MessageStream.readMapped(messagePath, records);
+            } else {
+                MessageStream.read(messagePath, records);
             }
-            System.out.println("Encrypted message written to encryptedMessage.txt");
-        } catch (IOException e) {
+            records.finish();
+        } catch (IOException | UncheckedIOException e) {
             System.out.println("Error writing to file");
+            return;
         }
+        reportOutput(false);
+    }
+/*---------------------------------------------------------------------
+ |  Methods ENCRYPT_CHUNK, WRITE_HEADING, OPEN_INDEX and REPORT_OUTPUT
+ |
+ |  Purpose:  ENCRYPT_CHUNK -- add each keystream value to the message
+ |                             value at the same index, mod 26, with 0
+ |                             mapped to 26, replacing the message
+ |                             values with the encrypted ones (see
+ |                             Combiner).
+ |            WRITE_HEADING -- print the heading shown above the
+ |                             encrypted messages.
+ |            OPEN_INDEX    -- start the checkpoint index for the output
+ |                             file.
+ |            REPORT_OUTPUT -- say which files were written.
+ |
+ |  Pre-condition: ENCRYPT_CHUNK -- values and key hold at least len
+ |                 values in the range 1–26.
+ |
+ |  Post-condition: As described above.
+ |
+ |  Parameters:
+ |      values    -- message values, overwritten with the result
+ |      key       -- keystream values
+ |      len       -- number of values to combine
+ |      out       -- where to write the heading
+ |      keystream -- the unused generator the encryption draws from
+ |      indexed   -- whether an index was written
+ |
+ |  Returns:  OPEN_INDEX: the new IndexWriter; the others: None (void)
+ |
+ |  Throws:   WRITE_HEADING, OPEN_INDEX: IOException if the output
+ |            cannot be written.
+ *-------------------------------------------------------------------*/
+    static void encryptChunk(byte[] values, byte[] key, int len) {
+        Combiner.INSTANCE.encrypt(values, 0, key, 0, len);
+    }
+
+    private static void writeHeading(LetterWriter out) throws IOException {
+        out.writeText("Encrypted Messages:");
+        out.newLine();
+        out.writeText("===================");
+        out.newLine();
+    }
 
-  
+    private static IndexWriter openIndex(KeystreamGenerator keystream) throws IOException {
+        return new IndexWriter(OUTPUT_FILE + CheckpointIndex.SUFFIX, keystream,
+                IndexWriter.DEFAULT_INTERVAL);
+    }
+
+    private static void reportOutput(boolean indexed) {
+        System.out.println("Encrypted message written to " + OUTPUT_FILE);
+        if (indexed) {
+            System.out.println("Checkpoint index written to " + OUTPUT_FILE + CheckpointIndex.SUFFIX);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,191 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class IndexWriter
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Writes the checkpoint index that Encrypt -index puts
+ ||                   next to its output. It sits between the encryption
+ ||                   loop and the KeystreamGenerator: every keystream
+ ||                   value is drawn through fill(), which saves the deck
+ ||                   state each time the keystream position reaches a
+ ||                   multiple of the interval, and every output line is
+ ||                   reported with endOfLine(), which records where the
+ ||                   line starts in the output file and at what keystream
+ ||                   position. The file layout is described in
+ ||                   CheckpointIndex, which reads it back.
+ ||
+ ||                   The saved deck states are enough to generate the
+ ||                   keystream, so the index must be kept as secret as
+ ||                   the deck file itself.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  Closeable
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  DEFAULT_INTERVAL – keystream values between
+ ||                                     checkpoints.
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  IndexWriter(String path, KeystreamGenerator keystream, int interval)
+ ||                        – Starts an index for an unused keystream.
+ ||
+ ||  Class Methods:  None
+ ||
+ ||  Inst. Methods:  void fill(byte[] dst, int off, int len)
+ ||                        – Draws keystream values, saving checkpoints.
+ ||
+ ||                   void endOfLine()
+ ||                        – Records the output line just finished.
+ ||
+ ||                   void close()
+ ||                        – Writes the checkpoints and the trailer.
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+class IndexWriter implements Closeable {
+    static final int DEFAULT_INTERVAL = 1 << 16;
+
+    private final DataOutputStream out;              // Header and line records
+    private final ByteArrayOutputStream checkpoints; // Saved decks, written on close
+    private final KeystreamGenerator keystream;
+    private final int interval;
+    private final int separatorLength;
+    private long lineCount;
+    private long checkpointCount;
+    private long lineOffset;         // Output byte offset of the current line
+    private long linePosition;       // Keystream position of the current line
+    private long lineLength;         // Letters written so far in the current line
+
+/*---------------------------------------------------------------------
+ |  Constructor IndexWriter
+ |
+ |  Purpose:  Create the index file, write its header and save the
+ |            starting deck as checkpoint 0.
+ |
+ |  Pre-condition: keystream has not generated any values yet, and
+ |                 interval > 0.
+ |
+ |  Post-condition: The index is open and empty apart from checkpoint 0.
+ |
+ |  Parameters:
+ |      path      -- the index file to create or truncate
+ |      keystream -- the generator the encryption draws from
+ |      interval  -- keystream values between checkpoints
+ |
+ |  Returns:  None (constructor)
+ |
+ |  Throws:   IOException if the file cannot be created.
+ *-------------------------------------------------------------------*/
+    IndexWriter(String path, KeystreamGenerator keystream, int interval) throws IOException {
+        if (keystream.position() != 0 || interval <= 0) {
+            throw new IllegalArgumentException("An index must start at keystream position 0 "
+                    + "with a positive interval");
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(path))));
+        this.checkpoints = new ByteArrayOutputStream();
+        this.keystream = keystream;
+        this.interval = interval;
+        this.separatorLength = System.lineSeparator().length();
+
+        out.writeInt(CheckpointIndex.MAGIC);
+        out.writeInt(CheckpointIndex.VERSION);
+        out.writeInt(interval);
+        saveCheckpoint();
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods FILL and END_OF_LINE
+ |
+ |  Purpose:  FILL        -- the same as KeystreamGenerator.fill, except
+ |                           that the values are drawn in pieces that end
+ |                           on multiples of the interval, and the deck
+ |                           is saved at each of them.
+ |            END_OF_LINE -- record the byte offset and keystream position
+ |                           at which the line just finished started. The
+ |                           line is assumed to have been written as one
+ |                           letter per keystream value followed by the
+ |                           platform line separator, as LetterWriter
+ |                           does.
+ |
+ |  Pre-condition: FILL -- off and len describe a range inside dst.
+ |
+ |  Post-condition: FILL -- dst holds len new keystream values.
+ |                  END_OF_LINE -- one more line has been recorded.
+ |
+ |  Parameters:
+ |      dst -- the array to write into
+ |      off -- index of the first value to write
+ |      len -- number of values to write
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if the index cannot be written.
+ *-------------------------------------------------------------------*/
+    void fill(byte[] dst, int off, int len) throws IOException {
+        int end = off + len;
+        while (off < end) {
+            int count = (int) Math.min(end - off, interval - keystream.position() % interval);
+            keystream.fill(dst, off, count);
+            off += count;
+            if (keystream.position() % interval == 0) {
+                saveCheckpoint();
+            }
+        }
+        lineLength += len;
+    }
+
+    void endOfLine() throws IOException {
+        out.writeLong(lineOffset);
+        out.writeLong(linePosition);
+        lineCount++;
+        lineOffset += lineLength + separatorLength;
+        linePosition = keystream.position();
+        lineLength = 0;
+    }
+
+    private void saveCheckpoint() {
+        for (int card : keystream.snapshot()) {
+            checkpoints.write(card);
+        }
+        checkpointCount++;
+    }
+
+/*---------------------------------------------------------------------
+ |  Method CLOSE
+ |
+ |  Purpose:  Finish the index: append the saved decks and the trailer
+ |            holding the number of lines, the number of checkpoints and
+ |            the length the output file should have.
+ |
+ |  Pre-condition: Every output line has been reported.
+ |
+ |  Post-condition: The index file is complete and closed.
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if the index cannot be written.
+ *-------------------------------------------------------------------*/
+    public void close() throws IOException {
+        try {
+            checkpoints.writeTo(out);
+            out.writeLong(lineCount);
+            out.writeLong(checkpointCount);
+            out.writeLong(lineOffset);
+        } finally {
+            out.close();
+        }
+    }
+}
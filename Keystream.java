@@ -11,6 +11,15 @@
  ||                   pseudo-random sequence of numbers. These numbers are
  ||                   then used to transform the plaintext messages into
  ||                   ciphertext, or ciphertext back into plaintext.
+ ||                   Keystream materializes every value at once;
+ ||                   KeystreamGenerator produces the same values lazily.
+ ||
+ ||                   The values are stored flat, one byte each, in a
+ ||                   single array with a table of line offsets, laid
+ ||                   out like Message's letters: a quarter of the data
+ ||                   of an int per value and no array header or pointer
+ ||                   per line. getKeystream() is a view that builds a
+ ||                   line's int[] only when asked for.
  ||
  ||  Inherits From:  None
  ||
@@ -27,28 +36,45 @@
  ||
  ||  Class Methods:  None
  ||
- ||  Inst. Methods:  void setKeyStream(List<int[]> numericMessages, Deck deck)
+ ||  Inst. Methods:  void setKeyStream(List<int[]> numericMessages, SolitaireDeck deck)
+ ||                   void setKeyStream(Message message, SolitaireDeck deck)
  ||                        – Generates the keystream for each message
  ||                          using the provided deck.
  ||
- ||                   int[][] encryptionAlgorithm(List<int[]> numericMessages, Deck deck)
+ ||                   byte[] encryptionAlgorithm(List<int[]> numericMessages, SolitaireDeck deck)
  ||                        – Core implementation of the Solitaire cipher
- ||                          keystream algorithm; returns a ragged array
- ||                          of keystream values corresponding to each
- ||                          character of each message.
+ ||                          keystream algorithm; returns the flat array
+ ||                          of keystream values for every character of
+ ||                          every message.
+ ||
+ ||                   List<int[]> getKeystream()
+ ||                        – Returns the generated keystream values, one
+ ||                          int[] per message.
  ||
- ||                   int[][] getValues()
- ||                        – Returns the generated keystream values.
+ ||                   int lineCount(), int lineStart(int line),
+ ||                   int lineLength(int line), byte[] values()
+ ||                        – The flat form: message i's values are
+ ||                          values()[lineStart(i) .. lineStart(i) +
+ ||                          lineLength(i) - 1].
+ ||
+ ||                   void skip(SolitaireDeck deck, long count)
+ ||                        – Advances deck past keystream values without
+ ||                          generating an array for them.
  ||
  ++-----------------------------------------------------------------------*/
+import java.util.AbstractList;
 import java.util.List;
 
 class Keystream {
 
-    int[][] keystreamValues;  //initializing a ragged array representing keystream values
+    private byte[] values;        // Keystream values of every message, one after another
+    private int[] lineStarts;     // Message i's values are values[lineStarts[i] .. lineStarts[i + 1] - 1]
+    private int lineCount;
 
     Keystream() {
-
+        this.values = new byte[0];
+        this.lineStarts = new int[1];
+        this.lineCount = 0;
     }
 /*---------------------------------------------------------------------
  |  Methods SETKEYSTREAM, GETKEYSTREAM
@@ -56,97 +82,152 @@ class Keystream {
  |  Purpose:  
  |      SETKEYSTREAM -- Initialize the Keystream object by generating
  |                        the keystream values from a list of numeric
- |                        messages and a given Deck object using the
- |                        encryption algorithm.
- |      GETKEYSTREAM -- Retrieve the 2D array of keystream values
- |                        previously generated.
+ |                        messages, or from the lines of a Message, and a
+ |                        given Deck object using the encryption
+ |                        algorithm.
+ |      GETKEYSTREAM -- Retrieve the keystream values previously
+ |                        generated, one int[] per message.
  |
  |  Pre-condition:  
  |      SETKEYSTREAM -- numericMessages contains valid numeric message
- |                        representations; deck has been properly initialized.
+ |                        representations, or message has been loaded;
+ |                        deck has been properly initialized.
  |      GETKEYSTREAM -- setKeyStream() has already been called to populate
- |                        the keystreamValues field.
+ |                        the keystream.
  |
  |  Post-condition:  
- |      SETKEYSTREAM -- keystreamValues is populated with numeric values
- |                        corresponding to the encryption keystream.
- |      GETKEYSTREAM -- Returns a reference to the existing keystreamValues
- |                        array; no modification occurs.
+ |      SETKEYSTREAM -- The flat values and line offsets are populated
+ |                        with the encryption keystream.
+ |      GETKEYSTREAM -- Returns a read-only view of the values; each get()
+ |                        builds a new int[]. No modification occurs.
  |
  |  Parameters:
  |      SETKEYSTREAM: numericMessages -- List<int[]> of numeric message arrays
- |                     deck -- Deck object representing the current deck state
+ |                     message -- Message whose lines to generate keystream for
+ |                     deck -- SolitaireDeck representing the current deck state
  |      GETKEYSTREAM: None
  |
  |  Returns:
  |      SETKEYSTREAM: None (void)
- |      GETKEYSTREAM: int[][] representing the keystream values for messages
+ |      GETKEYSTREAM: List<int[]> representing the keystream values for messages
  *-------------------------------------------------------------------*/
-    void setKeyStream(List<int[]> numericMessages, Deck deck){
-        this.keystreamValues = encryptionAlgorithm(numericMessages, deck);
+    void setKeyStream(List<int[]> numericMessages, SolitaireDeck deck){
+        encryptionAlgorithm(numericMessages, deck);
+    }
+
+    void setKeyStream(Message message, SolitaireDeck deck) {
+        int[] starts = new int[message.lineCount() + 1];
+        for (int i = 0; i < message.lineCount(); i++) {
+            starts[i + 1] = starts[i] + message.lineLength(i);
+        }
+        generate(starts, message.lineCount(), deck);
+    }
+
+    List<int[]> getKeystream() {
+        return new AbstractList<int[]>() {
+            public int[] get(int line) {
+                int start = lineStarts[line];
+                int[] lineValues = new int[lineStarts[line + 1] - start];
+                for (int i = 0; i < lineValues.length; i++) {
+                    lineValues[i] = values[start + i];
+                }
+                return lineValues;
+            }
+
+            public int size() {
+                return lineCount;
+            }
+        };
+    }
+
+    int lineCount() {
+        return lineCount;
+    }
+
+    int lineStart(int line) {
+        return lineStarts[line];
     }
 
-    int[][] getKeystream() {
-        return keystreamValues;
+    int lineLength(int line) {
+        return lineStarts[line + 1] - lineStarts[line];
+    }
+
+    byte[] values() {
+        return values;
     }
 /*---------------------------------------------------------------------
  |  Method ENCRYPTIONALGORITHM
  |
- |  Purpose:  Generate a 2D array of keystream values for a list of numeric
+ |  Purpose:  Generate the keystream values for a list of numeric
  |            messages using a given Deck object according to the Solitaire
  |            cipher algorithm. The method repeatedly manipulates the deck
  |            (joker moves, triple cut, count cut) to produce valid keystream
- |            numbers that will be used for message encryption.
+ |            numbers that will be used for message encryption; the steps
+ |            themselves are in SolitaireDeck.nextValue().
  |
  |  Pre-condition:  
  |      numericMessages -- List<int[]> containing numeric representations of
  |                          messages (1–26 for letters).  
- |      deck -- Deck object properly initialized and representing a valid 28-card deck.
+ |      deck -- SolitaireDeck properly initialized and representing a valid 28-card deck
+ |              (a Deck or any other representation, such as RotatingDeck).
  |
  |  Post-condition:  
- |      Returns a 2D array of integers where each sub-array corresponds to
- |      the keystream values for a specific message. The keystreamValues field
- |      of the Keystream object is updated with these values.
+ |      The flat values of the Keystream object hold one keystream value
+ |      per letter, message after message, and the line offsets mark
+ |      where each message starts.
  |
  |  Parameters:
  |      numericMessages -- List<int[]> of numeric message arrays to generate
  |                          keystream for.
- |      deck -- Deck object used to generate the keystream numbers.
+ |      deck -- SolitaireDeck used to generate the keystream numbers.
  |
- |  Returns:  int[][] containing the keystream values for all messages.
+ |  Returns:  byte[] containing the keystream values for all messages.
  *-------------------------------------------------------------------*/
 
-    int[][] encryptionAlgorithm(List<int[]> numericMessages, Deck deck){
-        keystreamValues = new int[numericMessages.size()][];
-        for (int i = 0; i < numericMessages.size(); i++) { 
-            int[] msgNumbers = numericMessages.get(i);       // numeric representation of the i-th message
-            keystreamValues[i] = new int[msgNumbers.length];
-        
-            for (int j = 0; j < msgNumbers.length; j++) {
-                    while(true){
-                        deck.moveJoker27();
-                        deck.moveJoker28();
-                        deck.tripleCut();
-                        deck.countCut();
-
-                        int topCardValue = deck.getDeck()[0];
-                        int count;
-                        if (topCardValue >= 27) {
-                            count = 27;
-                        } else {
-                            count = topCardValue;
-                        }
-                        int next = deck.getDeck()[count];
+    byte[] encryptionAlgorithm(List<int[]> numericMessages, SolitaireDeck deck){
+        int[] starts = new int[numericMessages.size() + 1];
+        for (int i = 0; i < numericMessages.size(); i++) {
+            starts[i + 1] = Math.addExact(starts[i], numericMessages.get(i).length);
+        }
+        generate(starts, numericMessages.size(), deck);
+        return values;
+    }
 
-                        if (next != 27 && next != 28) {
-                            keystreamValues[i][j] = next;  
-                            break;
-                        }
-                    }
-                }
+    // Fills values with one keystream value per letter of the given layout
+    private void generate(int[] starts, int count, SolitaireDeck deck) {
+        byte[] generated = new byte[starts[count]];
+        for (int k = 0; k < generated.length; k++) {
+            generated[k] = (byte) deck.nextValue();
         }
+        this.values = generated;
+        this.lineStarts = starts;
+        this.lineCount = count;
+    }
 
-        return keystreamValues;
+/*---------------------------------------------------------------------
+ |  Method SKIP
+ |
+ |  Purpose:  Advance deck past count keystream values, leaving it where
+ |            encryptionAlgorithm would leave it after producing them,
+ |            without allocating or storing anything. Used to resume part
+ |            way through a keystream, e.g. to skip the messages before
+ |            the one wanted.
+ |
+ |  Pre-condition:  deck represents a valid 28-card deck; count >= 0.
+ |
+ |  Post-condition: deck has been advanced; the stored values are unchanged.
+ |
+ |  Parameters:
+ |      deck  -- SolitaireDeck to advance.
+ |      count -- number of keystream values to skip.
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    void skip(SolitaireDeck deck, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Cannot skip a negative number of values: " + count);
+        }
+        deck.skip(count);
     }
   
 }
\ No newline at end of file
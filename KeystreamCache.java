@@ -0,0 +1,401 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class KeystreamCache
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  On-disk cache of the keystream for one starting deck,
+ ||                   so that jobs that keep starting from the same deck
+ ||                   file read their keystream from a memory-mapped file
+ ||                   instead of shuffling the deck again. The cache lives
+ ||                   in the directory named by the solitaire.cache system
+ ||                   property, one file per starting deck, named after a
+ ||                   SHA-256 hash of the 28 cards.
+ ||
+ ||                   The file holds one byte per keystream value after a
+ ||                   fixed header, which records how many values are
+ ||                   stored and the deck state after the last of them.
+ ||                   When a read runs past the stored values the cache is
+ ||                   extended from that state, under a file lock so that
+ ||                   two programs can share a cache directory.
+ ||
+ ||                   The cached values are the keystream itself, so the
+ ||                   cache directory must be kept as secret as the deck
+ ||                   files.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  Closeable
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  CACHE_PROPERTY – name of the system property that
+ ||                                   enables the cache ("solitaire.cache").
+ ||                   MAGIC, VERSION, HEADER_SIZE – file header.
+ ||                   EXTEND_UNIT – the cache grows by multiples of this.
+ ||                   WINDOW_BITS – log2 of the size of a mapped window.
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  None (see open)
+ ||
+ ||  Class Methods:  KeystreamGenerator generator(Deck deck)
+ ||                        – A generator for deck, reading from the cache
+ ||                          if the property is set.
+ ||
+ ||                   KeystreamCache open(String directory, int[] cards)
+ ||                        – Opens or creates the cache for a deck.
+ ||
+ ||  Inst. Methods:  void read(long position, byte[] dst, int off, int len)
+ ||                        – Copies keystream values, extending the cache
+ ||                          if needed.
+ ||
+ ||                   long length()
+ ||                        – Number of values stored.
+ ||
+ ||                   void close()
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class KeystreamCache implements Closeable {
+    static final String CACHE_PROPERTY = "solitaire.cache";
+    static final int MAGIC = 0x534c4b43;    // "SLKC"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 128;
+    static final int EXTEND_UNIT = 1 << 16;
+    static final int WINDOW_BITS = 26;
+
+    private static final int WINDOW_SIZE = 1 << WINDOW_BITS;
+    private static final Map<Path, KeystreamCache> OPEN = new HashMap<>();
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int[] cards;                  // The starting deck
+    private final List<MappedByteBuffer> windows = new ArrayList<>();
+    private long length;                        // Values stored, as last read from the header
+    private int[] endCards;                     // Deck after the last stored value
+
+    private KeystreamCache(Path path, FileChannel channel, int[] cards) {
+        this.path = path;
+        this.channel = channel;
+        this.cards = cards.clone();
+        this.endCards = cards.clone();
+    }
+
+/*---------------------------------------------------------------------
+ |  Method GENERATOR
+ |
+ |  Purpose:  Give Encrypt and Decrypt the keystream for deck. If the
+ |            solitaire.cache property is set, the generator reads from
+ |            the cache for deck in that directory; if the cache cannot
+ |            be used a warning is printed and the keystream is
+ |            generated from the deck as usual.
+ |
+ |  Pre-condition: deck has been populated from a deck file.
+ |
+ |  Post-condition: deck is unchanged if the cache is used. The cache
+ |                  stays open for the rest of the program.
+ |
+ |  Parameters:
+ |      deck -- the starting deck
+ |
+ |  Returns:  A KeystreamGenerator at position 0.
+ *-------------------------------------------------------------------*/
+    static KeystreamGenerator generator(Deck deck) {
+        String directory = System.getProperty(CACHE_PROPERTY);
+        if (directory != null && deck.getDeck() != null) {
+            try {
+                return new KeystreamGenerator(open(directory, deck.getDeck()));
+            } catch (IOException e) {
+                System.out.println("Warning: keystream cache not used: " + e.getMessage());
+            }
+        }
+        return new KeystreamGenerator(SolitaireDeck.select(deck));
+    }
+
+/*---------------------------------------------------------------------
+ |  Method OPEN
+ |
+ |  Purpose:  Open the cache file for a starting deck in directory,
+ |            creating the directory and an empty cache if needed, and
+ |            check the header of an existing one. A cache already
+ |            opened by this program is shared.
+ |
+ |  Pre-condition: cards holds a 28-card deck.
+ |
+ |  Post-condition: The cache is open.
+ |
+ |  Parameters:
+ |      directory -- the cache directory
+ |      cards     -- the starting deck
+ |
+ |  Returns:  The cache for cards.
+ |
+ |  Throws:   IOException if the file cannot be opened or created, or is
+ |            not a cache for this deck.
+ *-------------------------------------------------------------------*/
+    static synchronized KeystreamCache open(String directory, int[] cards) throws IOException {
+        Path dir = Paths.get(directory);
+        Files.createDirectories(dir);
+        Path path = dir.resolve("keystream-" + hash(cards) + ".cache").toAbsolutePath();
+        KeystreamCache cache = OPEN.get(path);
+        if (cache != null) {
+            return cache;
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            cache = new KeystreamCache(path, channel, cards);
+            FileLock lock = channel.lock();
+            try {
+                if (channel.size() == 0) {
+                    cache.writeHeader();
+                } else {
+                    cache.readHeader();
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        OPEN.put(path, cache);
+        return cache;
+    }
+
+    private static String hash(int[] cards) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (int card : cards) {
+                digest.update((byte) card);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : Arrays.copyOf(digest.digest(), 16)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available", e);
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods READ_HEADER and WRITE_HEADER
+ |
+ |  Purpose:  The header is MAGIC, VERSION, the number of stored values,
+ |            the 28 starting cards and the 28 cards after the last
+ |            stored value, padded to HEADER_SIZE bytes.
+ |            READ_HEADER  -- load length and endCards from the file,
+ |                            checking that it belongs to this deck.
+ |            WRITE_HEADER -- store length and endCards.
+ |
+ |  Pre-condition: The caller holds the file lock.
+ |
+ |  Post-condition: The fields and the file header agree.
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if the header cannot be read or written, or
+ |            does not describe a cache for this deck.
+ *-------------------------------------------------------------------*/
+    private void readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("Keystream cache is damaged: " + path);
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a keystream cache: " + path);
+        }
+        long stored = header.getLong();
+        int[] start = new int[28];
+        int[] end = new int[28];
+        for (int i = 0; i < 28; i++) {
+            start[i] = header.get();
+        }
+        for (int i = 0; i < 28; i++) {
+            end[i] = header.get();
+        }
+        if (!Arrays.equals(start, cards) || stored < 0 || channel.size() < HEADER_SIZE + stored) {
+            throw new IOException("Keystream cache is damaged: " + path);
+        }
+        length = stored;
+        endCards = end;
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(length);
+        for (int card : cards) {
+            header.put((byte) card);
+        }
+        for (int card : endCards) {
+            header.put((byte) card);
+        }
+        header.clear();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Method READ
+ |
+ |  Purpose:  Copy the keystream values at position .. position + len - 1
+ |            into dst, extending the cache first if it does not hold
+ |            them yet. The values are copied out of read-only mapped
+ |            windows of the file; a window is mapped again when the
+ |            file has grown past the part of it that was mapped.
+ |
+ |  Pre-condition: position >= 0; off and len describe a range in dst.
+ |
+ |  Post-condition: dst holds the values; the cache may have grown.
+ |
+ |  Parameters:
+ |      position -- keystream position of the first value
+ |      dst      -- the array to write into
+ |      off      -- index of the first value to write
+ |      len      -- number of values to write
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if the cache cannot be read or extended.
+ *-------------------------------------------------------------------*/
+    synchronized void read(long position, byte[] dst, int off, int len) throws IOException {
+        if (position + len > length) {
+            extend(position + len);
+        }
+        while (len > 0) {
+            int number = (int) (position >>> WINDOW_BITS);
+            int at = (int) (position & (WINDOW_SIZE - 1));
+            int count = Math.min(len, WINDOW_SIZE - at);
+            window(number, at + count).get(at, dst, off, count);
+            position += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    private MappedByteBuffer window(int number, int needed) throws IOException {
+        while (windows.size() <= number) {
+            windows.add(null);
+        }
+        MappedByteBuffer window = windows.get(number);
+        if (window == null || window.capacity() < needed) {
+            long start = (long) number << WINDOW_BITS;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + start,
+                    Math.min(WINDOW_SIZE, length - start));
+            windows.set(number, window);
+        }
+        return window;
+    }
+
+/*---------------------------------------------------------------------
+ |  Method EXTEND
+ |
+ |  Purpose:  Make the cache hold at least end values. Under the file
+ |            lock the header is read again, since another program may
+ |            have extended the file meanwhile; if it is still short,
+ |            the deck is restored from the stored end state and values
+ |            are generated and appended up to the next multiple of
+ |            EXTEND_UNIT past end. The values are forced to the disk
+ |            before the header is rewritten, so that even after a
+ |            power failure a cache is never left claiming values it
+ |            does not have.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: length >= end.
+ |
+ |  Parameters:
+ |      end -- the number of values needed
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if the file cannot be locked or written.
+ *-------------------------------------------------------------------*/
+    private void extend(long end) throws IOException {
+        FileLock lock = channel.lock();
+        try {
+            readHeader();
+            if (length >= end) {
+                return;
+            }
+            long target = (end + EXTEND_UNIT - 1) / EXTEND_UNIT * EXTEND_UNIT;
+
+            Deck deck = new Deck();
+            deck.setDeck(endCards);
+            KeystreamGenerator generator = new KeystreamGenerator(SolitaireDeck.select(deck), length);
+            byte[] chunk = new byte[EXTEND_UNIT];
+            while (generator.position() < target) {
+                int count = (int) Math.min(chunk.length, target - generator.position());
+                long offset = HEADER_SIZE + generator.position();
+                generator.fill(chunk, 0, count);
+                ByteBuffer values = ByteBuffer.wrap(chunk, 0, count);
+                while (values.hasRemaining()) {
+                    channel.write(values, offset + values.position());
+                }
+            }
+            channel.force(false);       // Values on disk before the header counts them
+            length = target;
+            endCards = generator.snapshot();
+            writeHeader();
+        } finally {
+            lock.release();
+        }
+    }
+
+    synchronized long length() {
+        return length;
+    }
+
+/*---------------------------------------------------------------------
+ |  Method CLOSE
+ |
+ |  Purpose:  Close the cache file. The mapped windows stay readable
+ |            until they are garbage collected, but the cache must not
+ |            be read after it is closed.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: The file is closed and open() will open it afresh.
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if the file cannot be closed.
+ *-------------------------------------------------------------------*/
+    public void close() throws IOException {
+        synchronized (KeystreamCache.class) {
+            OPEN.remove(path);
+        }
+        synchronized (this) {
+            windows.clear();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class KeystreamGenerator
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Pull-style source of Solitaire keystream values. Where
+ ||                   Keystream computes the values for every character of
+ ||                   every message up front, a KeystreamGenerator hands
+ ||                   them out one at a time or a chunk at a time, so the
+ ||                   caller only ever holds as much keystream as its own
+ ||                   buffer. It produces exactly the same sequence as
+ ||                   Keystream.encryptionAlgorithm for the same deck.
+ ||                   A generator can also read its values from a
+ ||                   KeystreamCache instead of a deck.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  KeystreamGenerator(SolitaireDeck deck)
+ ||                        – Generates from the current state of deck.
+ ||
+ ||                   KeystreamGenerator(SolitaireDeck deck, long position)
+ ||                        – Continues a keystream from a saved deck state
+ ||                          that is position values in.
+ ||
+ ||                   KeystreamGenerator(KeystreamCache cache)
+ ||                        – Reads the keystream from a cache.
+ ||
+ ||  Class Methods:  None
+ ||
+ ||  Inst. Methods:  int nextValue()
+ ||                        – Returns the next keystream value.
+ ||
+ ||                   void fill(byte[] dst, int off, int len)
+ ||                        – Writes the next len keystream values.
+ ||
+ ||                   void skip(long count)
+ ||                        – Moves past count values without producing them.
+ ||
+ ||                   long position()
+ ||                        – Number of values generated so far.
+ ||
+ ||                   int[] snapshot()
+ ||                        – Copy of the current card order.
+ ||
+ ||                   DeckState state()
+ ||                        – The current card order as an immutable
+ ||                          snapshot.
+ ||
+ ||                   KeystreamGenerator fork()
+ ||                        – An independent generator at the same point.
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+class KeystreamGenerator {
+    private final SolitaireDeck deck;   // Deck advanced by every value handed out
+    private final KeystreamCache cache; // Or, if not null, where the values are read from
+    private final byte[] single;        // One-value buffer for nextValue() from the cache
+    private long position;              // Number of values handed out so far
+
+/*---------------------------------------------------------------------
+ |  Constructor KeystreamGenerator
+ |
+ |  Purpose:  Create a generator that advances the given deck. The deck
+ |            is used directly, not copied, so it should not be
+ |            manipulated by anything else while the generator is in use.
+ |
+ |  Pre-condition: deck is a valid 28-card deck.
+ |
+ |  Post-condition: position() is 0.
+ |
+ |  Parameters:
+ |      deck -- the deck to generate the keystream from
+ |
+ |  Returns:  None (constructor)
+ *-------------------------------------------------------------------*/
+    KeystreamGenerator(SolitaireDeck deck) {
+        this(deck, 0);
+    }
+
+/*---------------------------------------------------------------------
+ |  Constructor KeystreamGenerator
+ |
+ |  Purpose:  Create a generator that picks up a keystream part way
+ |            through, from a deck restored to the state it had after
+ |            position values (see snapshot()). position only affects
+ |            what position() reports; the values come from the deck.
+ |
+ |  Pre-condition: deck is in the state a generator started from the
+ |                 original deck reached after position values.
+ |
+ |  Post-condition: position() is position.
+ |
+ |  Parameters:
+ |      deck     -- the restored deck
+ |      position -- number of values already generated from it
+ |
+ |  Returns:  None (constructor)
+ *-------------------------------------------------------------------*/
+    KeystreamGenerator(SolitaireDeck deck, long position) {
+        this.deck = deck;
+        this.cache = null;
+        this.single = null;
+        this.position = position;
+    }
+
+/*---------------------------------------------------------------------
+ |  Constructor KeystreamGenerator
+ |
+ |  Purpose:  Create a generator that reads the keystream of the cache's
+ |            starting deck from the cache, which extends itself as
+ |            needed. There is no deck to take a snapshot of.
+ |
+ |  Pre-condition: cache is open.
+ |
+ |  Post-condition: position() is 0.
+ |
+ |  Parameters:
+ |      cache -- the cache to read from
+ |
+ |  Returns:  None (constructor)
+ *-------------------------------------------------------------------*/
+    KeystreamGenerator(KeystreamCache cache) {
+        this(cache, 0);
+    }
+
+    private KeystreamGenerator(KeystreamCache cache, long position) {
+        this.deck = null;
+        this.cache = cache;
+        this.single = new byte[1];
+        this.position = position;
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods NEXT_VALUE and FILL
+ |
+ |  Purpose:  NEXT_VALUE -- return the next keystream value.
+ |            FILL       -- write the next len keystream values into
+ |                          dst[off] .. dst[off + len - 1]. Values are
+ |                          1–26, so they fit in a byte.
+ |
+ |  Pre-condition: FILL -- off and len describe a range inside dst.
+ |
+ |  Post-condition: The deck has been advanced (or the cache read) and
+ |                  position() grows by the number of values produced.
+ |                  A cache that cannot be read or extended is reported
+ |                  with an UncheckedIOException.
+ |
+ |  Parameters:
+ |      dst -- the array to write into
+ |      off -- index of the first value to write
+ |      len -- number of values to write
+ |
+ |  Returns:  NEXT_VALUE: the value, 1–26; FILL: None (void)
+ *-------------------------------------------------------------------*/
+    int nextValue() {
+        if (cache != null) {
+            fill(single, 0, 1);
+            return single[0];
+        }
+        position++;
+        return deck.nextValue();
+    }
+
+    void fill(byte[] dst, int off, int len) {
+        if (off < 0 || len < 0 || off + len > dst.length) {
+            throw new IndexOutOfBoundsException("Range " + off + ".." + (off + len)
+                    + " does not fit in an array of " + dst.length);
+        }
+        if (cache != null) {
+            try {
+                cache.read(position, dst, off, len);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            position += len;
+            return;
+        }
+        for (int i = off; i < off + len; i++) {
+            dst[i] = (byte) deck.nextValue();
+        }
+        position += len;
+    }
+
+/*---------------------------------------------------------------------
+ |  Method SKIP
+ |
+ |  Purpose:  Move count values further into the keystream without
+ |            producing them, using the deck's own skip loop. With a
+ |            cache only the position moves.
+ |
+ |  Pre-condition: count >= 0.
+ |
+ |  Post-condition: position() has grown by count and the next value is
+ |                  the one count values later than it would have been.
+ |
+ |  Parameters:
+ |      count -- number of values to skip
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    void skip(long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Cannot skip a negative number of values: " + count);
+        }
+        if (cache == null) {
+            deck.skip(count);
+        }
+        position += count;
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods POSITION and SNAPSHOT
+ |
+ |  Purpose:  POSITION -- report how many values have been generated.
+ |            SNAPSHOT -- copy the current card order, from which the
+ |                        keystream can be resumed later with
+ |                        Deck.setDeck(int[]) and the two-argument
+ |                        constructor.
+ |
+ |  Pre-condition: SNAPSHOT -- the generator is not reading from a
+ |                 cache; if it is, IllegalStateException is thrown.
+ |
+ |  Post-condition: Nothing is changed.
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  POSITION: the count; SNAPSHOT: a new array of 28 cards.
+ *-------------------------------------------------------------------*/
+    long position() {
+        return position;
+    }
+
+    int[] snapshot() {
+        if (cache != null) {
+            throw new IllegalStateException("A cached keystream has no deck to take a snapshot of");
+        }
+        int[] cards = new int[28];
+        for (int i = 0; i < 28; i++) {
+            cards[i] = deck.cardAt(i);
+        }
+        return cards;
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods STATE and FORK
+ |
+ |  Purpose:  STATE -- the current card order as a DeckState, which can
+ |                     be shared between threads and forked from again
+ |                     later.
+ |            FORK  -- a new generator that produces the same values
+ |                     this one would from here on, but shares no
+ |                     mutable state with it: it gets its own copy of
+ |                     the deck (or its own position in the same
+ |                     cache), so the two can be used on different
+ |                     threads.
+ |
+ |  Pre-condition: STATE -- as for SNAPSHOT.
+ |
+ |  Post-condition: This generator is unchanged.
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  The snapshot; the new generator, at the same position().
+ *-------------------------------------------------------------------*/
+    DeckState state() {
+        return DeckState.of(snapshot());
+    }
+
+    KeystreamGenerator fork() {
+        if (cache != null) {
+            return new KeystreamGenerator(cache, position);
+        }
+        return new KeystreamGenerator(SolitaireDeck.select(state().toDeck()), position);
+    }
+}
@@ -0,0 +1,131 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Interface LaneKernel
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Runs Solitaire steps on many independent decks at
+ ||                   once, for MultiDeck. The decks are stored as a
+ ||                   structure of arrays of card positions:
+ ||
+ ||                     positions[(card - 1) * stride + lane]
+ ||
+ ||                   is where card (1–28) is in deck number lane, 0 being
+ ||                   the top. In that form each of the four deck
+ ||                   operations is the same small formula applied to
+ ||                   every card of every deck, with only a few numbers
+ ||                   per deck (the jokers' positions, the count) that
+ ||                   differ between lanes, so it needs no branches and
+ ||                   suits SIMD:
+ ||
+ ||                     move a joker     – swap the positions x and
+ ||                                        x + 1, or 27 and 0 at the
+ ||                                        bottom, as Deck does
+ ||                     triple cut       – with jokers at lo < hi:
+ ||                                        p > hi  -> p - hi - 1
+ ||                                        p < lo  -> p + 28 - lo
+ ||                                        else    -> p - lo + 27 - hi
+ ||                     count cut by k   – p = 27 -> 27
+ ||                                        p < k   -> p + 27 - k
+ ||                                        else    -> p - k
+ ||                                        (k = 0 when the bottom card
+ ||                                        is a joker)
+ ||
+ ||                   ScalarLaneKernel does this one lane at a time.
+ ||                   VectorLaneKernel, in simd/, does it for a whole
+ ||                   vector of lanes at a time with the incubating Vector
+ ||                   API; like VectorCombiner it is compiled separately,
+ ||                   loaded by name, and replaced by ScalarLaneKernel
+ ||                   when it cannot be loaded.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  LANES_PROPERTY – name of the system property used by
+ ||                                   select() ("solitaire.lanes").
+ ||                   LANE_MULTIPLE  – stride is always a multiple of this.
+ ||                   INSTANCE       – the kernel chosen by select().
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||  Class Methods:  LaneKernel select()
+ ||                        – Returns the kernel chosen by the
+ ||                          solitaire.lanes property.
+ ||
+ ||  Inst. Methods:  void steps(byte[] positions, int stride, byte[] out, int count)
+ ||                        – Runs count steps on every lane.
+ ||
+ ++-----------------------------------------------------------------------*/
+
+interface LaneKernel {
+    String LANES_PROPERTY = "solitaire.lanes";
+    int LANE_MULTIPLE = 64;        // Bytes in the widest vector (AVX-512)
+    LaneKernel INSTANCE = select();
+
+/*---------------------------------------------------------------------
+ |  Method STEPS
+ |
+ |  Purpose:  Run count Solitaire steps (joker A, joker B, triple cut,
+ |            count cut, then read the output card) on each of the
+ |            stride decks. Unlike SolitaireDeck.nextValue, a step whose
+ |            output card is a joker is not repeated: it produces 0, so
+ |            every lane takes the same number of steps and the caller
+ |            drops the zeros.
+ |
+ |  Pre-condition: positions holds stride valid decks in the layout
+ |                 above; stride is a multiple of LANE_MULTIPLE; out
+ |                 holds at least count * stride bytes.
+ |
+ |  Post-condition: Every deck has been advanced count steps, and
+ |                  out[s * stride + lane] is the output of step s of
+ |                  that lane (1–26), or 0.
+ |
+ |  Parameters:
+ |      positions -- the decks, updated in place
+ |      stride    -- number of lanes, and distance between cards' rows
+ |      out       -- receives the step outputs
+ |      count     -- number of steps
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    void steps(byte[] positions, int stride, byte[] out, int count);
+
+/*---------------------------------------------------------------------
+ |  Method SELECT
+ |
+ |  Purpose:  Choose the kernel. The solitaire.lanes system property may
+ |            be "auto" (the default: VectorLaneKernel if it can be
+ |            loaded, otherwise ScalarLaneKernel), "vector"
+ |            (VectorLaneKernel or an error) or "scalar".
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: None
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  The LaneKernel to use.
+ *-------------------------------------------------------------------*/
+    static LaneKernel select() {
+        String kind = System.getProperty(LANES_PROPERTY, "auto");
+        switch (kind) {
+            case "scalar": return new ScalarLaneKernel();
+            case "auto":
+            case "vector":
+                try {
+                    return (LaneKernel) Class.forName("VectorLaneKernel")
+                            .getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    if (kind.equals("vector")) {
+                        throw new IllegalStateException("VectorLaneKernel is not available: " + e, e);
+                    }
+                    return new ScalarLaneKernel();
+                }
+            default:
+                throw new IllegalArgumentException("Unknown lane kernel: " + kind);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class LetterWriter
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Byte-level output for letters. Numeric letter values
+ ||                   (1–26) are written as ASCII 'A'–'Z' straight into a
+ ||                   reusable direct ByteBuffer, which is flushed through
+ ||                   a channel (a FileChannel for files) whenever it
+ ||                   fills up. No String or char is made per letter, so
+ ||                   writing costs no allocation per character.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  Closeable
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  BUFFER_SIZE – size of the direct buffer in bytes.
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  LetterWriter(WritableByteChannel channel, boolean ownsChannel)
+ ||                        – Writes to channel, closing it on close() only
+ ||                          if ownsChannel is true.
+ ||
+ ||  Class Methods:  LetterWriter toFile(String path)
+ ||                        – Writer that creates or truncates a file.
+ ||
+ ||                   LetterWriter toConsole()
+ ||                        – Writer on standard output, left open on close.
+ ||
+ ||  Inst. Methods:  void write(byte[] values, int off, int len)
+ ||                        – Writes letters given as values 1–26.
+ ||
+ ||                   void newLine()
+ ||                        – Writes the platform line separator.
+ ||
+ ||                   void writeText(String text)
+ ||                        – Writes an ASCII string, e.g. a heading.
+ ||
+ ||                   void flush(), void close()
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+class LetterWriter implements Closeable {
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private static final byte[] LINE_SEPARATOR =
+            System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final WritableByteChannel channel;  // Where full buffers go
+    private final boolean ownsChannel;          // Whether close() closes channel
+    private final ByteBuffer buffer;            // Bytes not yet written
+
+/*---------------------------------------------------------------------
+ |  Constructor LetterWriter
+ |
+ |  Purpose:  Create a writer on an open channel.
+ |
+ |  Pre-condition: channel is open for writing.
+ |
+ |  Post-condition: The writer is empty and ready for use.
+ |
+ |  Parameters:
+ |      channel     -- the channel to write to
+ |      ownsChannel -- true if close() should also close channel
+ |
+ |  Returns:  None (constructor)
+ *-------------------------------------------------------------------*/
+    LetterWriter(WritableByteChannel channel, boolean ownsChannel) {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods TO_FILE and TO_CONSOLE
+ |
+ |  Purpose:  TO_FILE    -- open a FileChannel on path, creating the
+ |                          file or truncating an existing one.
+ |            TO_CONSOLE -- wrap System.out, so the output stays in order
+ |                          with anything printed to it directly. Closing
+ |                          the writer flushes it but leaves System.out
+ |                          open.
+ |
+ |  Pre-condition: TO_FILE -- path names a writable location.
+ |
+ |  Post-condition: A new writer has been created.
+ |
+ |  Parameters:
+ |      path -- the file to write
+ |
+ |  Returns:  The new LetterWriter.
+ |
+ |  Throws:   IOException if the file cannot be opened.
+ *-------------------------------------------------------------------*/
+    static LetterWriter toFile(String path) throws IOException {
+        FileChannel file = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return new LetterWriter(file, true);
+    }
+
+    static LetterWriter toConsole() {
+        return new LetterWriter(Channels.newChannel(System.out), false);
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods WRITE, NEW_LINE and WRITE_TEXT
+ |
+ |  Purpose:  Append to the buffer, flushing it to the channel whenever
+ |            it is full.
+ |            WRITE      -- letters given as numeric values 1–26.
+ |            NEW_LINE   -- the platform line separator, as println uses.
+ |            WRITE_TEXT -- the characters of an ASCII string.
+ |
+ |  Pre-condition: WRITE -- off and len describe a range inside values,
+ |                 all of which are 1–26.
+ |
+ |  Post-condition: The bytes have been buffered or written.
+ |
+ |  Parameters:
+ |      values -- letter values to write
+ |      off    -- index of the first value
+ |      len    -- number of values
+ |      text   -- ASCII text to write
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if the channel cannot be written.
+ *-------------------------------------------------------------------*/
+    void write(byte[] values, int off, int len) throws IOException {
+        int end = off + len;
+        while (off < end) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            int count = Math.min(end - off, buffer.remaining());
+            for (int i = off; i < off + count; i++) {
+                buffer.put((byte) ('A' + values[i] - 1));
+            }
+            off += count;
+        }
+    }
+
+    void newLine() throws IOException {
+        putBytes(LINE_SEPARATOR);
+    }
+
+    void writeText(String text) throws IOException {
+        putBytes(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void putBytes(byte[] bytes) throws IOException {
+        if (buffer.remaining() < bytes.length) {
+            flushBuffer();
+        }
+        buffer.put(bytes);
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods FLUSH and CLOSE
+ |
+ |  Purpose:  FLUSH -- write out everything buffered so far.
+ |            CLOSE -- flush, then close the channel if this writer
+ |                     opened it.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: All buffered bytes have reached the channel.
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if the channel cannot be written or closed.
+ *-------------------------------------------------------------------*/
+    void flush() throws IOException {
+        flushBuffer();
+    }
+
+    public void close() throws IOException {
+        flushBuffer();
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
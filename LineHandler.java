@@ -0,0 +1,38 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Interface LineHandler
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Receives a cleaned message from MessageStream one
+ ||                   piece at a time: the numeric letter values (1–26) of
+ ||                   a line in one or more chunks, including the 'X'
+ ||                   padding, followed by an end-of-line call. Lines that
+ ||                   Message would drop are never reported.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||  Inst. Methods:  void letters(byte[] values, int len)
+ ||                        – values[0] .. values[len - 1] are the next
+ ||                          letters of the current line. The array is
+ ||                          reused after the call returns.
+ ||
+ ||                   void endOfLine()
+ ||                        – The current line is complete.
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.io.IOException;
+
+interface LineHandler {
+    void letters(byte[] values, int len) throws IOException;
+
+    void endOfLine() throws IOException;
+}
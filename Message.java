@@ -11,6 +11,17 @@
  ||                   as necessary, and converting letters to numeric
  ||                   representations suitable for processing by the
  ||                   Solitaire encryption algorithm.
+ ||                   The reading, cleaning, padding and conversion are
+ ||                   done in one pass over the raw bytes by
+ ||                   MessageStream; Message collects the resulting lines.
+ ||
+ ||                   All lines are kept as letter values (1–26), one
+ ||                   byte each, back to back in a single array, with an
+ ||                   array of line offsets: about an eighth of the
+ ||                   memory of an int[] and a String per line, and one
+ ||                   sequential run for the keystream combine to walk.
+ ||                   getNumbers() and getCleanedMessage() are views that
+ ||                   build a line's int[] or String only when asked for.
  ||
  ||  Inherits From:  None
  ||
@@ -26,23 +37,15 @@
  ||                                empty data structures for storing
  ||                                cleaned and numeric messages.
  ||
- ||  Class Methods:  static List<String> readMsg(String messageFilePath)
- ||                        – Reads raw text messages from the specified
- ||                          file. Returns them as a list of strings,
- ||                          preserving line separation.
+ ||  Class Methods:  None
  ||
  ||  Inst. Methods:  void setMessage(String messageFilePath)
  ||                        – Reads, cleans, and converts the message from
  ||                          the file into numeric representation.
  ||
- ||                   private List<String> cleanMessage(List<String> rawMessages)
- ||                        – Helper method, removes all non-alphabetical characters,
- ||                          converts lowercase to uppercase, and pads
- ||                          the message to a multiple of 5 letters.
- ||
- ||                   private List<int[]> messageToNumbers(List<String> cleanedMessages)
- ||                        – Helper method, converts cleaned string messages into numeric
- ||                          arrays (A=1, B=2, …, Z=26).
+ ||                   void setMessageMapped(String messageFilePath)
+ ||                        – Same result, reading the file through memory
+ ||                          mappings.
  ||
  ||                   String numberToLetter(int n)
  ||                        – Converts a numeric value back to its
@@ -55,20 +58,31 @@
  ||                        – Returns the numeric representations of the
  ||                          cleaned messages.
  ||
+ ||                   int lineCount(), int lineStart(int line),
+ ||                   int lineLength(int line), byte[] letters()
+ ||                        – The compact form: line i is
+ ||                          letters()[lineStart(i) .. lineStart(i) +
+ ||                          lineLength(i) - 1].
+ ||
  ++-----------------------------------------------------------------------*/
-import java.util.Scanner;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.ArrayList;
 
 class Message {
-    private List<int[]> numericMessage;   // Field declaration of numeric representation of a message
-    private List<String> cleanedMessage;  // Field declaration of the message after non-alphabetical characters are removed
+    private static final int MAX_LETTERS = Integer.MAX_VALUE - 8;   // Largest array the JVM allows
+
+    private byte[] letters;       // Letter values of every line, one after another
+    private int[] lineStarts;     // Line i is letters[lineStarts[i] .. lineStarts[i + 1] - 1]
+    private int lineCount;
 
     Message() {
-        this.numericMessage = new ArrayList<>();
-        this.cleanedMessage = new ArrayList<>();
+        this.letters = new byte[0];
+        this.lineStarts = new int[1];
+        this.lineCount = 0;
     }
 
 /*---------------------------------------------------------------------
@@ -91,11 +105,11 @@ class Message {
  |                      initialized by calling setMessage().
  |
  |  Post-condition:  
- |      SETMESSAGE -- The cleanedMessage and numericMessage fields of
- |                      the Message object are populated based on the
- |                      input file. 
- |      GETCLEANEDMESSAGE / GETNUMBERS -- No changes are made; data is
- |                      returned as-is.
+ |      SETMESSAGE -- The letters and line offsets of the Message
+ |                      object are populated based on the input file.
+ |      GETCLEANEDMESSAGE / GETNUMBERS -- No changes are made; the
+ |                      lists are read-only views, and each get() builds
+ |                      a new String or int[] from the letters.
  |
  |  Parameters:
  |      SETMESSAGE: messageFilePath -- path to the input message file.
@@ -107,179 +121,170 @@ class Message {
  |      GETNUMBERS: List<int[]> of numeric message representations
  *-------------------------------------------------------------------*/
     void setMessage(String messageFilePath){
-        List<String> rawMessage = readMsg(messageFilePath);
-        this.cleanedMessage = cleanMessage(rawMessage);
-        this.numericMessage = messageToNumbers(this.cleanedMessage);
+        load(messageFilePath, false);
     }
 
-    List<String> getCleanedMessage() {
-        return cleanedMessage;
+/*---------------------------------------------------------------------
+ |  Method SET_MESSAGE_MAPPED
+ |
+ |  Purpose:  Populate the Message exactly as setMessage() does, but
+ |            read the file with MessageStream.readMapped(), through
+ |            memory-mapped windows of the file instead of read calls.
+ |
+ |  Pre-condition: messageFilePath points to a valid UTF-8 or ASCII
+ |                 file containing at least one line of text with
+ |                 letters.
+ |
+ |  Post-condition: The Message holds the same lines setMessage()
+ |                  would produce.
+ |
+ |  Parameters:
+ |      messageFilePath -- path to the input message file.
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    void setMessageMapped(String messageFilePath) {
+        load(messageFilePath, true);
     }
 
-    List<int[]> getNumbers() {
-        return numericMessage;
-    }
 /*---------------------------------------------------------------------
- |  Method READMSG
+ |  Method LOAD
  |
- |  Purpose:  Read a text file containing messages and return a list of
- |            lines that contain at least one alphabetical character.
- |            Lines without letters are ignored. This method serves as
- |            the initial step in preparing messages for encryption or
- |            decryption by filtering out invalid content.
+ |  Purpose:  Run MessageStream over the file and append the values of
+ |            each kept line, already cleaned and padded, to the letters
+ |            array, recording where every line starts. The array starts
+ |            at the size of the file, which is usually enough, grows by
+ |            half when it is not, and is trimmed to size at the end
+ |            unless less than an eighth of it is unused.
+ |            Lines without letters never reach the handler.
  |
- |  Pre-condition: messageFilePath points to a valid file location. The
- |                 file may contain multiple lines of text, some of
- |                 which may be empty or contain only non-letter
- |                 characters.
+ |  Pre-condition: None
  |
- |  Post-condition: A list of valid message lines containing letters is
- |                  returned. The original file remains unchanged.
- |                  If the file does not exist, is empty, or contains
- |                  no letters, appropriate error messages are printed.
+ |  Post-condition: The Message holds the kept lines, or none if the
+ |                  file could not be read (an error message is
+ |                  printed).
  |
  |  Parameters:
- |      messageFilePath -- the path to the text file containing messages
+ |      messageFilePath -- path to the input message file.
+ |      mapped          -- true to read through memory mappings.
  |
- |  Returns:  A List<String> containing all lines from the file that
- |            include at least one letter. Returns null if the file
- |            does not exist or is empty.
+ |  Returns:  None (void)
  *-------------------------------------------------------------------*/
-    private List<String> readMsg(String messageFilePath) {   
-        File file = new File(messageFilePath); //object representing the file containing the messages
-        List<String> messages = new ArrayList<>(); //Array list of messages read in from input file, before cleaning
-
-        if (!file.exists()) { 
-            System.out.println("Error: message file not found: " + messageFilePath);
-            return null;
-        }
-
-        if (file.length() == 0) {
-            System.out.println("Error: message file is empty: " + messageFilePath);
-            return null;
+    private void load(String messageFilePath, boolean mapped) {
+        this.letters = new byte[0];
+        this.lineStarts = new int[1];
+        this.lineCount = 0;
+        if (!MessageStream.canRead(messageFilePath)) {
+            return;
         }
 
-        try (Scanner fileScanner = new Scanner(file)) {
-            boolean fileHasLetters = false; //boolean to check if the message file contains any letters
-
-            while (fileScanner.hasNextLine()) {
-                String line = fileScanner.nextLine(); //object representing a single line in the message file
-
-                
-                boolean lineHasLetters = false; //boolean to check if a single line has letters
-                for (char c : line.toCharArray()) { 
-                    if (Character.isLetter(c)) {
-                        lineHasLetters = true; 
-                        break;
+        byte[][] buffer = { new byte[(int) Math.min(new File(messageFilePath).length(), MAX_LETTERS)] };
+        int[] length = { 0 };
+        LineHandler collector = new LineHandler() {
+            public void letters(byte[] values, int len) {
+                if (length[0] + len > buffer[0].length) {
+                    long grown = Math.max((long) buffer[0].length * 3 / 2, (long) length[0] + len);
+                    if (grown > MAX_LETTERS) {
+                        throw new OutOfMemoryError("Message is too large to hold in memory");
                     }
+                    buffer[0] = Arrays.copyOf(buffer[0], (int) grown);
                 }
-                if (lineHasLetters == false) {
-                    continue;
-                }
-                fileHasLetters = true;
-                messages.add(new String(line));
+                System.arraycopy(values, 0, buffer[0], length[0], len);
+                length[0] += len;
             }
 
-            if (!fileHasLetters) { 
-                System.out.println("Error: message file does not contain any letters: " + file.getName());
+            public void endOfLine() {
+                if (lineCount + 1 == lineStarts.length) {
+                    lineStarts = Arrays.copyOf(lineStarts, lineStarts.length * 2);
+                }
+                lineStarts[++lineCount] = length[0];
             }
+        };
 
-        } catch (FileNotFoundException e) {
-            System.out.println("Error reading file: " + file.getName());
+        try {
+            if (mapped) {
+                MessageStream.readMapped(messageFilePath, collector);
+            } else {
+                MessageStream.read(messageFilePath, collector);
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading file: " + messageFilePath);
         }
 
-        return messages;
+        // Trimming copies the array, so a little slack (as in an encrypted
+        // file, which is nearly all letters) is cheaper to keep
+        int kept = lineStarts[lineCount];    // Drops any part line left by an error
+        this.letters = buffer[0].length - kept <= buffer[0].length / 8 ? buffer[0]
+                                                                      : Arrays.copyOf(buffer[0], kept);
+        this.lineStarts = Arrays.copyOf(lineStarts, lineCount + 1);
     }
+
 /*---------------------------------------------------------------------
- |  Method CLEANMESSAGE
+ |  Methods LINE_COUNT, LINE_START, LINE_LENGTH and LETTERS
  |
- |  Purpose:  Process a list of raw message strings by removing all
- |            non-alphabetical characters, converting lowercase letters
- |            to uppercase, and padding each message with 'X' characters
- |            so that its length is a multiple of 5. This prepares the
- |            messages for encryption.
+ |  Purpose:  Give direct access to the compact form, for code that
+ |            walks the letters without building an int[] or String
+ |            per line.
  |
- |  Pre-condition: rawMessages is a non-null List of strings, which may
- |                 contain letters, digits, spaces, and other symbols.
+ |  Pre-condition: 0 <= line < lineCount().
  |
- |  Post-condition: Returns a List of cleaned message strings where
- |                  every string contains only uppercase letters and
- |                  its length is a multiple of 5. The input list
- |                  rawMessages remains unchanged.
+ |  Post-condition: No changes are made. letters() returns the array
+ |                  itself, not a copy; it may run on past the end of
+ |                  the last line.
  |
  |  Parameters:
- |      rawMessages -- String ArrayList containing the original, unprocessed
- |                     message lines.
+ |      line -- the line, counting from 0
  |
- |  Returns:  String ArrayList containing the cleaned and padded messages.
+ |  Returns:  The number of lines; where a line starts in letters(); its
+ |            length; the array of letter values.
  *-------------------------------------------------------------------*/
-    private List<String> cleanMessage(List<String> rawMessages) {
-        List<String> cleanedMessages = new ArrayList<>();
-
-        for (String inputMessage : rawMessages) {
-            if (inputMessage == null) continue;
+    int lineCount() {
+        return lineCount;
+    }
 
-            StringBuilder cleanedMsg = new StringBuilder();
+    int lineStart(int line) {
+        return lineStarts[line];
+    }
 
-            for (int i = 0; i < inputMessage.length(); i++) {
-                char c = inputMessage.charAt(i);
+    int lineLength(int line) {
+        return lineStarts[line + 1] - lineStarts[line];
+    }
 
-                if (c >= 'a' && c <= 'z') {
-                    c = (char) (c - 'a' + 'A');
-                }
+    byte[] letters() {
+        return letters;
+    }
 
-                if (c >= 'A' && c <= 'Z') {
-                    cleanedMsg.append(c);
+    List<String> getCleanedMessage() {
+        return new AbstractList<String>() {
+            public String get(int line) {
+                byte[] text = Arrays.copyOfRange(letters, lineStarts[line], lineStarts[line + 1]);
+                for (int i = 0; i < text.length; i++) {
+                    text[i] += 'A' - 1;
                 }
+                return new String(text, StandardCharsets.US_ASCII);
             }
 
-            int remainder = cleanedMsg.length() % 5;
-            if (remainder != 0) {
-                int padding = 5 - remainder;
-                for (int i = 0; i < padding; i++) {
-                    cleanedMsg.append('X');
-                }
+            public int size() {
+                return lineCount;
             }
-
-            cleanedMessages.add(cleanedMsg.toString());
-        }
-
-        return cleanedMessages;
+        };
     }
-/*---------------------------------------------------------------------
- |  Method MESSAGETONUMBERS
- |
- |  Purpose:  Convert a list of cleaned message strings into their
- |            numeric representations, where 'A' = 1, 'B' = 2, ..., 'Z' = 26.
- |            This prepares messages for the encryption process, which
- |            operates on numeric values.
- |
- |  Pre-condition: cleanedMessages is a non-null List of strings containing
- |                 only uppercase letters, with each string length being
- |                 a multiple of 5.
- |
- |  Post-condition: Returns a List of integer arrays representing the
- |                  numeric values of each character in the messages.
- |                  The input list cleanedMessages remains unchanged.
- |
- |  Parameters:
- |      cleanedMessages -- List<String> containing cleaned message strings.
- |
- |  Returns:  List<int[]> where each array corresponds to a message and
- |            contains numeric values of its letters.
- *-------------------------------------------------------------------*/
-    private List<int[]> messageToNumbers(List<String> cleanedMessages) {
-        List<int[]> numericMessages = new ArrayList<>();
 
-        for (String cleanedMessage : cleanedMessages) {
-            int[] numericMsg = new int[cleanedMessage.length()];
-            for (int i = 0; i < cleanedMessage.length(); i++) {
-                numericMsg[i] = cleanedMessage.charAt(i) - 'A' + 1;
+    List<int[]> getNumbers() {
+        return new AbstractList<int[]>() {
+            public int[] get(int line) {
+                int start = lineStarts[line];
+                int[] numbers = new int[lineStarts[line + 1] - start];
+                for (int i = 0; i < numbers.length; i++) {
+                    numbers[i] = letters[start + i];
+                }
+                return numbers;
             }
-            numericMessages.add(numericMsg);
-        }
 
-        return numericMessages;
+            public int size() {
+                return lineCount;
+            }
+        };
     }
 /*---------------------------------------------------------------------
  |  Method NUMBERTOLETTER
@@ -0,0 +1,487 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class MessageStream
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Reads a message file incrementally and hands the
+ ||                   cleaned, numeric form of each line to a LineHandler
+ ||                   in fixed-size chunks. It applies the message rules
+ ||                   (lines where Character.isLetter finds no letter are
+ ||                   dropped, only A–Z and a–z are kept, each line is
+ ||                   padded with 'X' to a multiple of 5), and Message is
+ ||                   built with it too. It never holds more than one
+ ||                   chunk of the file in memory, even inside a single
+ ||                   huge line. The file can be read either with plain reads
+ ||                   or, for very large files, through read-only memory
+ ||                   mappings of the file. Either way the raw bytes go
+ ||                   through one pass of scan(), which looks every byte
+ ||                   up in the 256-entry LETTER_VALUES table: an ASCII
+ ||                   letter becomes its value 1–26 straight into the
+ ||                   reusable values buffer, '\n' and '\r' end the line
+ ||                   (padding it there and then), other ASCII bytes are
+ ||                   skipped, and only bytes of multi-byte UTF-8
+ ||                   characters take a slower decoding path.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  CHUNK_SIZE  – characters read, and most letter values
+ ||                                handed over, at a time.
+ ||                   PADDING     – numeric value of the padding letter 'X'.
+ ||                   WINDOW_SIZE – bytes mapped at a time by readMapped.
+ ||                   INPUT_SIZE  – raw bytes scanned at a time.
+ ||                   LETTER_VALUES, SKIP, LINE_END, NON_ASCII
+ ||                               – the byte classification table and
+ ||                                 its non-letter entries.
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  private MessageStream(LineHandler handler)
+ ||                        – Used by read() to hold the state of the scan.
+ ||
+ ||  Class Methods:  boolean canRead(String messageFilePath)
+ ||                        – Checks the file exists and is not empty.
+ ||
+ ||                   void read(String messageFilePath, LineHandler handler)
+ ||                        – Streams the cleaned message to handler.
+ ||
+ ||                   void readMapped(String messageFilePath, LineHandler handler)
+ ||                        – Same, reading through memory-mapped windows.
+ ||
+ ||                   boolean read(byte[] input, int length, LineHandler handler)
+ ||                        – Same, for a message already in memory.
+ ||
+ ||                   boolean isLineTerminator(char c)
+ ||                        – True for the characters Scanner ends a line on.
+ ||
+ ||  Inst. Methods:  int scan(byte[] input, int limit, boolean last)
+ ||                        – Cleans a block of raw UTF-8 bytes.
+ ||
+ ||                   void accept(char c)
+ ||                        – Cleans one character of the current line.
+ ||
+ ||                   void endLine()
+ ||                        – Pads and hands over the current line.
+ ||
+ ||                   boolean finish()
+ ||                        – Reports whether the file had any letters.
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+class MessageStream {
+    static final int CHUNK_SIZE = 8192;
+    static final byte PADDING = 'X' - 'A' + 1;
+    static final int WINDOW_SIZE = 1 << 28;
+    static final int INPUT_SIZE = 1 << 16;
+
+    static final byte SKIP = 0;           // LETTER_VALUES entries that are not letters
+    static final byte LINE_END = -1;
+    static final byte NON_ASCII = -2;
+    static final byte[] LETTER_VALUES = new byte[256];
+    static {
+        for (int b = 0x80; b < 256; b++) {
+            LETTER_VALUES[b] = NON_ASCII;
+        }
+        for (int letter = 0; letter < 26; letter++) {
+            LETTER_VALUES['A' + letter] = (byte) (letter + 1);
+            LETTER_VALUES['a' + letter] = (byte) (letter + 1);
+        }
+        LETTER_VALUES['\n'] = LINE_END;
+        LETTER_VALUES['\r'] = LINE_END;
+    }
+
+    private final LineHandler handler;  // Receives the cleaned lines
+    private final byte[] values;        // Letter values not yet handed over
+    private int count;                  // Number of entries of values in use
+    private long lineLength;            // Letters kept so far on this line
+    private boolean lineHasLetters;     // Whether a letter on this line has been seen but not kept
+    private boolean fileHasLetters;     // Whether any line has been kept
+
+    private MessageStream(LineHandler handler) {
+        this.handler = handler;
+        this.values = new byte[CHUNK_SIZE];
+    }
+
+/*---------------------------------------------------------------------
+ |  Method CAN_READ
+ |
+ |  Purpose:  Check the message file before any output is produced,
+ |            printing the same errors Message always has.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: An error message is printed if the file is missing
+ |                  or empty.
+ |
+ |  Parameters:
+ |      messageFilePath -- the path to the text file containing messages
+ |
+ |  Returns:  true if the file exists and is not empty.
+ *-------------------------------------------------------------------*/
+    static boolean canRead(String messageFilePath) {
+        File file = new File(messageFilePath);
+        if (!file.exists()) {
+            System.out.println("Error: message file not found: " + messageFilePath);
+            return false;
+        }
+
+        if (file.length() == 0) {
+            System.out.println("Error: message file is empty: " + messageFilePath);
+            return false;
+        }
+        return true;
+    }
+
+/*---------------------------------------------------------------------
+ |  Method READ
+ |
+ |  Purpose:  Read the message file INPUT_SIZE bytes at a time and clean
+ |            them with scan(), ending a line at each line terminator and
+ |            at the end of the file. The few bytes of a character cut
+ |            off at the end of a block are moved to the front and
+ |            scanned with the next block. If the platform default
+ |            charset is not UTF-8 the file is instead decoded by a
+ |            Reader and every character goes through accept().
+ |
+ |  Pre-condition: canRead(messageFilePath) is true. The file is in the
+ |                 platform default charset, as Scanner assumes.
+ |
+ |  Post-condition: handler has received every kept line in order. An
+ |                  error message is printed if the file contains no
+ |                  letters at all.
+ |
+ |  Parameters:
+ |      messageFilePath -- the path to the text file containing messages
+ |      handler         -- receives the cleaned lines
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if the file cannot be read or the handler
+ |            fails.
+ *-------------------------------------------------------------------*/
+    static void read(String messageFilePath, LineHandler handler) throws IOException {
+        MessageStream stream = new MessageStream(handler);
+
+        if (Charset.defaultCharset().equals(StandardCharsets.UTF_8)) {
+            byte[] input = new byte[INPUT_SIZE];
+            int filled = 0;
+            try (InputStream in = new FileInputStream(messageFilePath)) {
+                int read;
+                while ((read = in.read(input, filled, input.length - filled)) != -1) {
+                    filled = stream.scanAndKeep(input, filled + read, false);
+                }
+            }
+            stream.scanAndKeep(input, filled, true);
+        } else {
+            char[] input = new char[CHUNK_SIZE];
+            try (Reader reader = new InputStreamReader(new FileInputStream(messageFilePath))) {
+                int read;
+                while ((read = reader.read(input, 0, CHUNK_SIZE)) != -1) {
+                    for (int i = 0; i < read; i++) {
+                        char c = input[i];
+                        if (isLineTerminator(c)) {
+                            stream.endLine();
+                        } else {
+                            stream.accept(c);
+                        }
+                    }
+                }
+            }
+        }
+        stream.endLine();
+
+        if (!stream.finish()) {
+            System.out.println("Error: message file does not contain any letters: "
+                    + new File(messageFilePath).getName());
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Method READ_MAPPED
+ |
+ |  Purpose:  Read the message file through read-only memory mappings
+ |            of at most WINDOW_SIZE bytes each, so files larger than
+ |            2 GB can be read without a read call per block. Each window
+ |            is copied out INPUT_SIZE bytes at a time and cleaned with
+ |            scan(), exactly as read() does; a character whose bytes
+ |            run past the end of a window is completed from the next.
+ |
+ |  Pre-condition: canRead(messageFilePath) is true. The file is UTF-8
+ |                 (or plain ASCII), the default charset since JDK 18.
+ |
+ |  Post-condition: handler has received exactly what read() would
+ |                  have given it.
+ |
+ |  Parameters:
+ |      messageFilePath -- the path to the text file containing messages
+ |      handler         -- receives the cleaned lines
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if the file cannot be mapped or the handler
+ |            fails.
+ *-------------------------------------------------------------------*/
+    static void readMapped(String messageFilePath, LineHandler handler) throws IOException {
+        MessageStream stream = new MessageStream(handler);
+        byte[] input = new byte[INPUT_SIZE];
+        int filled = 0;
+
+        try (FileChannel channel = FileChannel.open(Paths.get(messageFilePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += WINDOW_SIZE) {
+                int length = (int) Math.min(WINDOW_SIZE, size - position);
+                ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                for (int offset = 0; offset < length; ) {
+                    int count = Math.min(length - offset, input.length - filled);
+                    window.get(offset, input, filled, count);
+                    offset += count;
+                    filled = stream.scanAndKeep(input, filled + count, false);
+                }
+            }
+        }
+        stream.scanAndKeep(input, filled, true);
+        stream.endLine();
+
+        if (!stream.finish()) {
+            System.out.println("Error: message file does not contain any letters: "
+                    + Paths.get(messageFilePath).getFileName());
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Method READ (in memory)
+ |
+ |  Purpose:  Clean a message that is already in memory, e.g. one sent
+ |            to SolitaireServer, with the same single scan() pass the
+ |            file readers use. Nothing is printed; the caller reports a
+ |            message without letters in its own way.
+ |
+ |  Pre-condition: input[0 .. length - 1] holds the UTF-8 bytes of the
+ |                 message.
+ |
+ |  Post-condition: handler has received every kept line in order.
+ |
+ |  Parameters:
+ |      input   -- the raw bytes
+ |      length  -- number of bytes in input
+ |      handler -- receives the cleaned lines
+ |
+ |  Returns:  true if the message had at least one line with letters.
+ |
+ |  Throws:   IOException if the handler fails.
+ *-------------------------------------------------------------------*/
+    static boolean read(byte[] input, int length, LineHandler handler) throws IOException {
+        MessageStream stream = new MessageStream(handler);
+        stream.scan(input, length, true);
+        stream.endLine();
+        return stream.finish();
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods SCAN and SCAN_AND_KEEP
+ |
+ |  Purpose:  SCAN          -- clean a block of raw UTF-8 bytes in one
+ |                             pass. Each byte is looked up in
+ |                             LETTER_VALUES: letters are stored as 1–26
+ |                             in values (handed over whenever it fills
+ |                             up), LINE_END calls endLine(), which pads
+ |                             the line, and SKIP bytes are passed over.
+ |                             A NON_ASCII byte starts a multi-byte
+ |                             sequence, which is decoded to a char so
+ |                             that the line terminators U+0085, U+2028
+ |                             and U+2029 and non-ASCII letters are
+ |                             recognized as Scanner would. Four-byte
+ |                             sequences and malformed bytes can never be
+ |                             letters or line terminators, so they are
+ |                             skipped.
+ |            SCAN_AND_KEEP -- scan, then move the bytes of an unfinished
+ |                             character to the front of input.
+ |
+ |  Pre-condition: input[0 .. limit - 1] holds bytes of the file,
+ |                 starting at the first byte of a character.
+ |
+ |  Post-condition: The scan state has been updated.
+ |
+ |  Parameters:
+ |      input -- the raw bytes
+ |      limit -- number of bytes in input
+ |      last  -- true if input ends at the end of the file
+ |
+ |  Returns:  SCAN: the number of bytes consumed, which is less than
+ |            limit only when the last character is incomplete and
+ |            last is false; SCAN_AND_KEEP: the number of bytes left at
+ |            the front of input.
+ |
+ |  Throws:   IOException if the handler fails.
+ *-------------------------------------------------------------------*/
+    private int scan(byte[] input, int limit, boolean last) throws IOException {
+        byte[] table = LETTER_VALUES;
+        int i = 0;
+        while (i < limit) {
+            int b = input[i];
+            byte value = table[b & 0xFF];
+            if (value > 0) {
+                values[count++] = value;
+                lineLength++;
+                if (count == CHUNK_SIZE) {
+                    handler.letters(values, count);
+                    count = 0;
+                }
+                i++;
+                continue;
+            }
+            if (value == SKIP) {
+                i++;
+                continue;
+            }
+            if (value == LINE_END) {
+                endLine();
+                i++;
+                continue;
+            }
+
+            int length = (b & 0xE0) == 0xC0 ? 2 : (b & 0xF0) == 0xE0 ? 3 : (b & 0xF8) == 0xF0 ? 4 : 1;
+            if (i + length > limit && !last) {
+                break;
+            }
+
+            char c = '\uFFFD';
+            if (length == 2 && i + 1 < limit && isContinuation(input[i + 1])) {
+                c = (char) (((b & 0x1F) << 6) | (input[i + 1] & 0x3F));
+            } else if (length == 3 && i + 2 < limit
+                    && isContinuation(input[i + 1]) && isContinuation(input[i + 2])) {
+                c = (char) (((b & 0x0F) << 12) | ((input[i + 1] & 0x3F) << 6) | (input[i + 2] & 0x3F));
+            } else if (length != 4 || i + 3 >= limit || !isContinuation(input[i + 1])
+                    || !isContinuation(input[i + 2]) || !isContinuation(input[i + 3])) {
+                length = 1;
+            }
+
+            if (isLineTerminator(c)) {
+                endLine();
+            } else if (!lineHasLetters && Character.isLetter(c)) {
+                lineHasLetters = true;
+            }
+            i += length;
+        }
+        return i;
+    }
+
+    private int scanAndKeep(byte[] input, int limit, boolean last) throws IOException {
+        int used = scan(input, limit, last);
+        System.arraycopy(input, used, input, 0, limit - used);
+        return limit - used;
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods ACCEPT, END_LINE and FINISH
+ |
+ |  Purpose:  ACCEPT   -- clean one character that is not a line
+ |                        terminator. ASCII letters are converted to
+ |                        1–26 and buffered, and the buffer is handed
+ |                        over whenever it fills up. A line counts as
+ |                        having letters if any character passes
+ |                        Character.isLetter, even though only ASCII
+ |                        letters are kept.
+ |            END_LINE -- if the line had letters (any kept letter or
+ |                        one that set lineHasLetters), add the 'X' padding,
+ |                        hand over what is buffered and call
+ |                        handler.endOfLine(); then start a new line.
+ |            FINISH   -- report whether any line was kept.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: The scan state has been updated.
+ |
+ |  Parameters:
+ |      c -- the character to clean
+ |
+ |  Returns:  ACCEPT, END_LINE: None (void); FINISH: true if the file
+ |            had at least one line with letters.
+ |
+ |  Throws:   IOException if the handler fails.
+ *-------------------------------------------------------------------*/
+    void accept(char c) throws IOException {
+        if (c >= 'a' && c <= 'z') {
+            c = (char) (c - 'a' + 'A');
+        }
+
+        if (c >= 'A' && c <= 'Z') {
+            values[count++] = (byte) (c - 'A' + 1);
+            lineLength++;
+            if (count == CHUNK_SIZE) {
+                handler.letters(values, count);
+                count = 0;
+            }
+        } else if (!lineHasLetters && Character.isLetter(c)) {
+            lineHasLetters = true;
+        }
+    }
+
+    void endLine() throws IOException {
+        if (lineHasLetters || lineLength > 0) {
+            int remainder = (int) (lineLength % 5);
+            if (remainder != 0) {
+                if (count + 5 - remainder > CHUNK_SIZE) {
+                    handler.letters(values, count);
+                    count = 0;
+                }
+                for (int p = remainder; p < 5; p++) {
+                    values[count++] = PADDING;
+                }
+            }
+            if (count > 0) {
+                handler.letters(values, count);
+                count = 0;
+            }
+            handler.endOfLine();
+            fileHasLetters = true;
+        }
+        lineLength = 0;
+        lineHasLetters = false;
+    }
+
+    boolean finish() {
+        return fileHasLetters;
+    }
+
+/*---------------------------------------------------------------------
+ |  Method IS_LINE_TERMINATOR
+ |
+ |  Purpose:  Recognize the characters that end a line for
+ |            Scanner.nextLine(). A "\r\n" pair is seen as two line
+ |            ends with an empty line between them, which makes no
+ |            difference because empty lines are dropped.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: None
+ |
+ |  Parameters:
+ |      c -- the character to test
+ |
+ |  Returns:  true if c ends a line.
+ *-------------------------------------------------------------------*/
+    static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029' || c == '\u0085';
+    }
+}
@@ -0,0 +1,168 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class MultiDeck
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Keystream source for many independent decks at once,
+ ||                   e.g. one per record or one per candidate key. The
+ ||                   decks are kept as a structure of arrays of card
+ ||                   positions (see LaneKernel), one lane per deck, and
+ ||                   advanced together STEP_BLOCK steps at a time by
+ ||                   LaneKernel.INSTANCE, which is vectorized when
+ ||                   VectorLaneKernel is available. Lane i's values are
+ ||                   exactly those a KeystreamGenerator (or
+ ||                   Keystream.encryptionAlgorithm) would produce from
+ ||                   deck i.
+ ||
+ ||                   The lanes do not produce values at the same rate,
+ ||                   since a step whose output card is a joker produces
+ ||                   nothing. A lane that has what it needs keeps
+ ||                   stepping with the others, and the values it makes
+ ||                   meanwhile are kept in its carry and handed out
+ ||                   first next time, so no lane ever has to wait or be
+ ||                   masked off.
+ ||
+ ||                   Not thread-safe: a MultiDeck belongs to one thread.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  STEP_BLOCK – steps run per kernel call.
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  MultiDeck(DeckState[] decks)
+ ||                        – One lane per deck.
+ ||
+ ||  Class Methods:  None
+ ||
+ ||  Inst. Methods:  int lanes()
+ ||                        – Number of decks.
+ ||
+ ||                   void fill(byte[] dst, int len)
+ ||                        – Writes the next len values of every lane.
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.util.Arrays;
+
+class MultiDeck {
+    static final int STEP_BLOCK = 64;
+
+    private final int lanes;
+    private final int stride;           // lanes rounded up to LaneKernel.LANE_MULTIPLE
+    private final byte[] positions;     // positions[(card - 1) * stride + lane]
+    private final byte[] stepOut;       // One kernel call's outputs
+    private final byte[][] carry;       // Values made but not yet handed out, per lane
+    private final int[] carryLength;
+    private final int[] have;           // Values written to dst so far in fill()
+
+/*---------------------------------------------------------------------
+ |  Constructor MultiDeck
+ |
+ |  Purpose:  Lay the decks out as positions. Lanes added to round the
+ |            stride up are given the first deck; their output is never
+ |            used.
+ |
+ |  Pre-condition: decks is not empty.
+ |
+ |  Post-condition: Every lane is at the start of its keystream.
+ |
+ |  Parameters:
+ |      decks -- the starting deck of each lane
+ |
+ |  Returns:  None (constructor)
+ *-------------------------------------------------------------------*/
+    MultiDeck(DeckState[] decks) {
+        if (decks.length == 0) {
+            throw new IllegalArgumentException("A MultiDeck needs at least one deck");
+        }
+        this.lanes = decks.length;
+        this.stride = (lanes + LaneKernel.LANE_MULTIPLE - 1) / LaneKernel.LANE_MULTIPLE
+                      * LaneKernel.LANE_MULTIPLE;
+        this.positions = new byte[28 * stride];
+        this.stepOut = new byte[STEP_BLOCK * stride];
+        this.carry = new byte[lanes][STEP_BLOCK];
+        this.carryLength = new int[lanes];
+        this.have = new int[lanes];
+
+        for (int lane = 0; lane < stride; lane++) {
+            DeckState deck = decks[lane < lanes ? lane : 0];
+            for (int i = 0; i < 28; i++) {
+                positions[(deck.cardAt(i) - 1) * stride + lane] = (byte) i;
+            }
+        }
+    }
+
+    int lanes() {
+        return lanes;
+    }
+
+/*---------------------------------------------------------------------
+ |  Method FILL
+ |
+ |  Purpose:  Write the next len keystream values of lane i to
+ |            dst[i * len] .. dst[i * len + len - 1], for every lane:
+ |            first from the lane's carry, then from kernel calls until
+ |            every lane has len values. The zeros of joker steps are
+ |            dropped while the step outputs are sorted out by lane.
+ |
+ |  Pre-condition: dst holds at least lanes() * len bytes.
+ |
+ |  Post-condition: Every lane is len values further on.
+ |
+ |  Parameters:
+ |      dst -- receives the values, lane by lane
+ |      len -- values per lane
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    void fill(byte[] dst, int len) {
+        if (len < 0 || (long) lanes * len > dst.length) {
+            throw new IndexOutOfBoundsException(lanes + " lanes of " + len
+                    + " values do not fit in an array of " + dst.length);
+        }
+        int waiting = 0;
+        for (int lane = 0; lane < lanes; lane++) {
+            int taken = Math.min(carryLength[lane], len);
+            System.arraycopy(carry[lane], 0, dst, lane * len, taken);
+            System.arraycopy(carry[lane], taken, carry[lane], 0, carryLength[lane] - taken);
+            carryLength[lane] -= taken;
+            have[lane] = taken;
+            if (taken < len) {
+                waiting++;
+            }
+        }
+
+        while (waiting > 0) {
+            LaneKernel.INSTANCE.steps(positions, stride, stepOut, STEP_BLOCK);
+            for (int s = 0; s < STEP_BLOCK; s++) {
+                int row = s * stride;
+                for (int lane = 0; lane < lanes; lane++) {
+                    byte value = stepOut[row + lane];
+                    if (value == 0) {
+                        continue;
+                    }
+                    if (have[lane] < len) {
+                        dst[lane * len + have[lane]++] = value;
+                        if (have[lane] == len) {
+                            waiting--;
+                        }
+                    } else {
+                        keep(lane, value);
+                    }
+                }
+            }
+        }
+    }
+
+    private void keep(int lane, byte value) {
+        if (carryLength[lane] == carry[lane].length) {
+            carry[lane] = Arrays.copyOf(carry[lane], carry[lane].length * 2);
+        }
+        carry[lane][carryLength[lane]++] = value;
+    }
+}
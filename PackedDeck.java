@@ -0,0 +1,436 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class PackedDeck
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  A deck of 28 cards packed 5 bits per card into three
+ ||                   longs. Each long holds 12 cards in its low 60 bits
+ ||                   (position p lives in word p / 12 at bit 5 * (p % 12)),
+ ||                   so no card straddles two words. Finding a joker is a
+ ||                   SWAR zero-field search, the joker moves flip two
+ ||                   fields with an xor, and the cuts are built by
+ ||                   shifting and masking whole runs of cards at once.
+ ||                   nextValue() runs the complete keystream step on
+ ||                   local copies of the three words, so the hot loop
+ ||                   touches no arrays at all.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  SolitaireDeck
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  FIELD_MASK  – mask for one 5-bit card
+ ||                   WORD_MASK   – the 60 bits of a word that hold cards
+ ||                   LOW_BITS    – the lowest bit of every field
+ ||                   HIGH_BITS   – the highest bit of every field
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  PackedDeck(int[] cards)
+ ||                        – Packs a 28-card deck.
+ ||
+ ||  Class Methods:  Static helpers working on the three words passed in
+ ||                   as arguments: word, field, find, shifted, runMask,
+ ||                   run and flip.
+ ||
+ ||  Inst. Methods:  void moveJoker27(), void moveJoker28(),
+ ||                   void tripleCut(), void countCut()
+ ||                        – The Solitaire deck manipulations.
+ ||
+ ||                   int cardAt(int position)
+ ||                        – Returns the card at a position.
+ ||
+ ||                   int nextValue()
+ ||                        – Register-only version of the keystream step.
+ ||
+ ||                   void skip(long count)
+ ||                        – Runs that step count times, writing the
+ ||                          fields back only at the end.
+ ||
+ ++-----------------------------------------------------------------------*/
+
+class PackedDeck implements SolitaireDeck {
+    static final long FIELD_MASK = 0x1FL;
+    static final long WORD_MASK = (1L << 60) - 1;
+    static final long LOW_BITS = 0x0084210842108421L;
+    static final long HIGH_BITS = LOW_BITS << 4;
+
+    private long word0;   // Positions 0–11
+    private long word1;   // Positions 12–23
+    private long word2;   // Positions 24–27 (fields 4–11 are always 0)
+
+/*---------------------------------------------------------------------
+ |  Constructor PackedDeck
+ |
+ |  Purpose:  Pack the 28 cards of an existing deck into three words.
+ |
+ |  Pre-condition: cards holds 28 card values in the range 0–28.
+ |
+ |  Post-condition: cardAt(i) == cards[i] for every i.
+ |
+ |  Parameters:
+ |      cards -- the deck to pack, top card first
+ |
+ |  Returns:  None (constructor)
+ *-------------------------------------------------------------------*/
+    PackedDeck(int[] cards) {
+        long[] words = new long[3];
+        for (int i = 0; i < 28; i++) {
+            words[i / 12] |= (long) cards[i] << (5 * (i % 12));
+        }
+        this.word0 = words[0];
+        this.word1 = words[1];
+        this.word2 = words[2];
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods WORD, FIELD and FIND
+ |
+ |  Purpose:  Read from a packed deck given as its three words.
+ |            WORD   -- returns word q, or 0 for any q outside 0–2 so
+ |                      that shifts can run off either end of the deck.
+ |            FIELD  -- returns the card at a position.
+ |            FIND   -- returns the position of a card. Every field of
+ |                      the word is xor-ed with the card, which turns the
+ |                      wanted field into zero, and the classic "has a
+ |                      zero field" bit trick locates it; the lowest
+ |                      flagged field is always a true match.
+ |
+ |  Pre-condition: The words hold a valid packed deck; card is 1–28.
+ |
+ |  Post-condition: Nothing is modified.
+ |
+ |  Parameters:
+ |      w0, w1, w2 -- the packed deck
+ |      q          -- a word number
+ |      position   -- a deck position, 0–27
+ |      card       -- the card to look for
+ |
+ |  Returns:  The word, the card, or the position (-1 if not found).
+ *-------------------------------------------------------------------*/
+    static long word(long w0, long w1, long w2, int q) {
+        switch (q) {
+            case 0: return w0;
+            case 1: return w1;
+            case 2: return w2;
+            default: return 0;
+        }
+    }
+
+    static int field(long w0, long w1, long w2, int position) {
+        return (int) ((word(w0, w1, w2, position / 12) >>> (5 * (position % 12))) & FIELD_MASK);
+    }
+
+    static int find(long w0, long w1, long w2, int card) {
+        long pattern = card * LOW_BITS;
+        long x = w0 ^ pattern;
+        long zero = (x - LOW_BITS) & ~x & HIGH_BITS;
+        if (zero != 0) {
+            return Long.numberOfTrailingZeros(zero) / 5;
+        }
+        x = w1 ^ pattern;
+        zero = (x - LOW_BITS) & ~x & HIGH_BITS;
+        if (zero != 0) {
+            return 12 + Long.numberOfTrailingZeros(zero) / 5;
+        }
+        x = w2 ^ pattern;
+        zero = (x - LOW_BITS) & ~x & HIGH_BITS;
+        if (zero != 0) {
+            return 24 + Long.numberOfTrailingZeros(zero) / 5;
+        }
+        return -1;
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods SHIFTED, RUN_MASK and RUN
+ |
+ |  Purpose:  Build word out of a rearranged deck.
+ |            SHIFTED  -- word out of the deck moved down by delta
+ |                        positions (up if delta is negative), i.e.
+ |                        field j of the result is field j + delta of
+ |                        the deck. It joins the top of one source word
+ |                        with the bottom of the next.
+ |            RUN_MASK -- the bits of word out covered by the positions
+ |                        to .. to + count - 1.
+ |            RUN      -- word out of a deck holding only the count
+ |                        cards starting at position from, moved to
+ |                        start at position to. A cut is the or of
+ |                        three runs.
+ |
+ |  Pre-condition: 0 <= from, to and from + count, to + count <= 28.
+ |
+ |  Post-condition: Nothing is modified.
+ |
+ |  Parameters:
+ |      w0, w1, w2 -- the packed deck
+ |      delta      -- number of positions to move by
+ |      from, to   -- first position of the run before and after
+ |      count      -- number of cards in the run
+ |      out        -- which result word to build, 0–2
+ |
+ |  Returns:  The requested word.
+ *-------------------------------------------------------------------*/
+    static long shifted(long w0, long w1, long w2, int delta, int out) {
+        int first = 12 * out + delta + 36;   // never negative, so / and % are exact
+        int q = first / 12 - 3;
+        int r = first % 12;
+        long low = q == 0 ? w0 : q == 1 ? w1 : q == 2 ? w2 : 0;
+        long high = q == -1 ? w0 : q == 0 ? w1 : q == 1 ? w2 : 0;
+        return ((low >>> (5 * r)) | (high << (60 - 5 * r))) & WORD_MASK;
+    }
+
+    static long runMask(int to, int count, int out) {
+        int low = Math.max(to - 12 * out, 0);
+        int high = Math.min(to + count - 12 * out, 12);
+        if (high <= low) {
+            return 0;
+        }
+        return ((1L << (5 * (high - low))) - 1) << (5 * low);
+    }
+
+    static long run(long w0, long w1, long w2, int from, int count, int to, int out) {
+        return shifted(w0, w1, w2, from - to, out) & runMask(to, count, out);
+    }
+
+/*---------------------------------------------------------------------
+ |  Method FLIP
+ |
+ |  Purpose:  Xor a value into the field at a position if that
+ |            position lies in word out. Xor-ing the same difference
+ |            into two fields swaps their cards.
+ |
+ |  Pre-condition: position is 0–27; bits fits in 5 bits.
+ |
+ |  Post-condition: Nothing is modified.
+ |
+ |  Parameters:
+ |      w        -- word out of the deck
+ |      out      -- which word w is, 0–2
+ |      position -- the field to change
+ |      bits     -- the value to xor in
+ |
+ |  Returns:  The updated word.
+ *-------------------------------------------------------------------*/
+    static long flip(long w, int out, int position, long bits) {
+        if (position / 12 != out) {
+            return w;
+        }
+        return w ^ (bits << (5 * (position % 12)));
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods CARD_AT, MOVE_JOKER27, MOVE_JOKER28, TRIPLE_CUT, COUNT_CUT
+ |
+ |  Purpose:  The SolitaireDeck operations on the packed fields, with
+ |            the same results as Deck. A joker move swaps the joker's
+ |            field with the next one (the bottom position wraps to
+ |            the top). The triple cut ors together the bottom run
+ |            moved to the top, the middle run and the top run moved
+ |            to the bottom. The count cut ors the runs above and
+ |            below the cut point back together in swapped order with
+ |            the bottom card left in place.
+ |
+ |  Pre-condition: The deck contains both jokers exactly once.
+ |
+ |  Post-condition: The deck has been rearranged; no card is lost or
+ |                  duplicated.
+ |
+ |  Parameters:
+ |      position -- (cardAt only) the position to read
+ |
+ |  Returns:  cardAt: the card; all others: None (void)
+ *-------------------------------------------------------------------*/
+    public int cardAt(int position) {
+        return field(word0, word1, word2, position);
+    }
+
+    public void moveJoker27() {
+        moveDown(27);
+    }
+
+    public void moveJoker28() {
+        moveDown(28);
+        moveDown(28);
+    }
+
+    private void moveDown(int joker) {
+        int position = find(word0, word1, word2, joker);
+        int next = position == 27 ? 0 : position + 1;
+        long bits = joker ^ field(word0, word1, word2, next);
+        word0 = flip(flip(word0, 0, position, bits), 0, next, bits);
+        word1 = flip(flip(word1, 1, position, bits), 1, next, bits);
+        word2 = flip(flip(word2, 2, position, bits), 2, next, bits);
+    }
+
+    public void tripleCut() {
+        long w0 = word0, w1 = word1, w2 = word2;
+        int index27 = find(w0, w1, w2, 27);
+        int index28 = find(w0, w1, w2, 28);
+        int first = Math.min(index27, index28);
+        int second = Math.max(index27, index28);
+        int middle = second - first + 1;
+        int bottom = 27 - second;
+
+        word0 = run(w0, w1, w2, second + 1, bottom, 0, 0)
+              | run(w0, w1, w2, first, middle, bottom, 0)
+              | run(w0, w1, w2, 0, first, bottom + middle, 0);
+        word1 = run(w0, w1, w2, second + 1, bottom, 0, 1)
+              | run(w0, w1, w2, first, middle, bottom, 1)
+              | run(w0, w1, w2, 0, first, bottom + middle, 1);
+        word2 = run(w0, w1, w2, second + 1, bottom, 0, 2)
+              | run(w0, w1, w2, first, middle, bottom, 2)
+              | run(w0, w1, w2, 0, first, bottom + middle, 2);
+    }
+
+    public void countCut() {
+        long w0 = word0, w1 = word1, w2 = word2;
+        int bottomCard = field(w0, w1, w2, 27);
+        if (bottomCard == 27 || bottomCard == 28) {
+            return;
+        }
+
+        word0 = run(w0, w1, w2, bottomCard, 27 - bottomCard, 0, 0)
+              | run(w0, w1, w2, 0, bottomCard, 27 - bottomCard, 0);
+        word1 = run(w0, w1, w2, bottomCard, 27 - bottomCard, 0, 1)
+              | run(w0, w1, w2, 0, bottomCard, 27 - bottomCard, 1);
+        word2 = run(w0, w1, w2, bottomCard, 27 - bottomCard, 0, 2)
+              | run(w0, w1, w2, 0, bottomCard, 27 - bottomCard, 2)
+              | (w2 & runMask(27, 1, 2));
+    }
+
+/*---------------------------------------------------------------------
+ |  Method NEXT_VALUE
+ |
+ |  Purpose:  The same keystream step as SolitaireDeck.nextValue(), with
+ |            every operation written out on local copies of the three
+ |            words. The jokers are only searched for once per call;
+ |            after that their positions are followed through each
+ |            operation arithmetically (a swap with the other joker,
+ |            the triple cut putting the first joker at the old bottom
+ |            length and the second at 27 minus the old first position,
+ |            and the count cut rotating every position above 27 by the
+ |            cut). The work is done by advance(), which writes the
+ |            fields back once the value has been found.
+ |
+ |  Pre-condition: The deck contains both jokers exactly once.
+ |
+ |  Post-condition: The deck has been advanced past the next keystream
+ |                  value.
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  The next keystream value, 1–26.
+ *-------------------------------------------------------------------*/
+    public int nextValue() {
+        return advance(1);
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods SKIP and ADVANCE
+ |
+ |  Purpose:  SKIP    -- advance past count keystream values.
+ |            ADVANCE -- the loop behind nextValue() and skip(): run the
+ |                       register-only keystream step until count
+ |                       non-joker outputs have been produced, keeping
+ |                       the three words and both joker positions in
+ |                       locals throughout, and write the words back
+ |                       once at the end.
+ |
+ |  Pre-condition: The deck contains both jokers exactly once;
+ |                 ADVANCE -- count >= 1.
+ |
+ |  Post-condition: The deck has been advanced past count values.
+ |
+ |  Parameters:
+ |      count -- number of keystream values to advance past
+ |
+ |  Returns:  SKIP: None (void); ADVANCE: the last value, 1–26.
+ *-------------------------------------------------------------------*/
+    public void skip(long count) {
+        if (count > 0) {
+            advance(count);
+        }
+    }
+
+    private int advance(long count) {
+        long w0 = word0, w1 = word1, w2 = word2;
+        int index27 = find(w0, w1, w2, 27);
+        int index28 = find(w0, w1, w2, 28);
+        while (true) {
+            int next = index27 == 27 ? 0 : index27 + 1;
+            int other = field(w0, w1, w2, next);
+            long bits = 27 ^ other;
+            w0 = flip(flip(w0, 0, index27, bits), 0, next, bits);
+            w1 = flip(flip(w1, 1, index27, bits), 1, next, bits);
+            w2 = flip(flip(w2, 2, index27, bits), 2, next, bits);
+            if (other == 28) {
+                index28 = index27;
+            }
+            index27 = next;
+
+            for (int move = 0; move < 2; move++) {
+                next = index28 == 27 ? 0 : index28 + 1;
+                other = field(w0, w1, w2, next);
+                bits = 28 ^ other;
+                w0 = flip(flip(w0, 0, index28, bits), 0, next, bits);
+                w1 = flip(flip(w1, 1, index28, bits), 1, next, bits);
+                w2 = flip(flip(w2, 2, index28, bits), 2, next, bits);
+                if (other == 27) {
+                    index27 = index28;
+                }
+                index28 = next;
+            }
+
+            int first = Math.min(index27, index28);
+            int second = Math.max(index27, index28);
+            int middle = second - first + 1;
+            int bottom = 27 - second;
+            long c0 = run(w0, w1, w2, second + 1, bottom, 0, 0)
+                    | run(w0, w1, w2, first, middle, bottom, 0)
+                    | run(w0, w1, w2, 0, first, bottom + middle, 0);
+            long c1 = run(w0, w1, w2, second + 1, bottom, 0, 1)
+                    | run(w0, w1, w2, first, middle, bottom, 1)
+                    | run(w0, w1, w2, 0, first, bottom + middle, 1);
+            long c2 = run(w0, w1, w2, second + 1, bottom, 0, 2)
+                    | run(w0, w1, w2, first, middle, bottom, 2)
+                    | run(w0, w1, w2, 0, first, bottom + middle, 2);
+            w0 = c0;
+            w1 = c1;
+            w2 = c2;
+            if (index27 < index28) {
+                index27 = bottom;
+                index28 = 27 - first;
+            } else {
+                index28 = bottom;
+                index27 = 27 - first;
+            }
+
+            int bottomCard = field(w0, w1, w2, 27);
+            if (bottomCard != 27 && bottomCard != 28) {
+                c0 = run(w0, w1, w2, bottomCard, 27 - bottomCard, 0, 0)
+                   | run(w0, w1, w2, 0, bottomCard, 27 - bottomCard, 0);
+                c1 = run(w0, w1, w2, bottomCard, 27 - bottomCard, 0, 1)
+                   | run(w0, w1, w2, 0, bottomCard, 27 - bottomCard, 1);
+                c2 = run(w0, w1, w2, bottomCard, 27 - bottomCard, 0, 2)
+                   | run(w0, w1, w2, 0, bottomCard, 27 - bottomCard, 2)
+                   | (w2 & runMask(27, 1, 2));
+                w0 = c0;
+                w1 = c1;
+                w2 = c2;
+                index27 = index27 < bottomCard ? index27 + 27 - bottomCard : index27 - bottomCard;
+                index28 = index28 < bottomCard ? index28 + 27 - bottomCard : index28 - bottomCard;
+            }
+
+            int topCard = (int) (w0 & FIELD_MASK);
+            int output = field(w0, w1, w2, topCard >= 27 ? 27 : topCard);
+            if (output != 27 && output != 28 && --count == 0) {
+                word0 = w0;
+                word1 = w1;
+                word2 = w2;
+                return output;
+            }
+        }
+    }
+}
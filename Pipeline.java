@@ -0,0 +1,383 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class Pipeline
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Staged version of the streaming encrypt and decrypt
+ ||                   (-pipeline). Three threads run side by side:
+ ||
+ ||                     reader    – MessageStream reads and cleans the
+ ||                                 input and packs the letters and line
+ ||                                 ends into chunks;
+ ||                     keystream – fills buffers with keystream values
+ ||                                 as fast as the deck allows;
+ ||                     caller    – combines each chunk with the next
+ ||                                 keystream values and writes it.
+ ||
+ ||                   The stages are connected by SpscRing buffers, with
+ ||                   a second ring in each direction returning empty
+ ||                   chunks and buffers for reuse, so nothing is
+ ||                   allocated once the pipeline is running. Since the
+ ||                   keystream does not depend on the message, the
+ ||                   keystream thread simply runs ahead until its ring
+ ||                   is full. The output is byte-for-byte the output of
+ ||                   the sequential -stream mode.
+ ||
+ ||                   Anything a worker thread throws is kept in the
+ ||                   shared Control and rethrown by the caller the next
+ ||                   time it has to wait for that worker, so a failed
+ ||                   stage ends the run instead of leaving the caller
+ ||                   waiting for a chunk or buffer that never comes. In
+ ||                   the same way a worker waiting on a ring gives up
+ ||                   once the caller has stopped.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  CHUNK_SIZE – letters per chunk and values per
+ ||                                keystream buffer.
+ ||                   RING_SIZE  – chunks or buffers in flight per stage.
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  None
+ ||
+ ||  Class Methods:  void run(String inputPath, boolean mapped,
+ ||                           KeystreamGenerator keystream, boolean encrypt,
+ ||                           LetterWriter writer, LetterWriter console)
+ ||                        – Encrypts or decrypts one file.
+ ||
+ ||  Inst. Methods:  None
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+class Pipeline {
+    static final int CHUNK_SIZE = MessageStream.CHUNK_SIZE;
+    static final int RING_SIZE = 16;
+
+/*---------------------------------------------------------------------
+ |  Class Chunk
+ |
+ |  Purpose:  Letters from the reader: length values, with a line ending
+ |            after the first breaks[i] of them for each i < breakCount
+ |            (an empty line gives two equal entries). The last chunk of
+ |            a file has last set, and error set if reading failed.
+ *-------------------------------------------------------------------*/
+    private static final class Chunk {
+        final byte[] values = new byte[CHUNK_SIZE];
+        int length;
+        int[] breaks = new int[64];
+        int breakCount;
+        boolean last;
+        IOException error;
+
+        void clear() {
+            length = 0;
+            breakCount = 0;
+        }
+
+        void addBreak() {
+            if (breakCount == breaks.length) {
+                breaks = Arrays.copyOf(breaks, breaks.length * 2);
+            }
+            breaks[breakCount++] = length;
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Class Control
+ |
+ |  Purpose:  State shared by the three threads: whether the caller has
+ |            stopped, and the first exception a worker thread threw.
+ |            TAKE and PUT are SpscRing.take and put that check both
+ |            while they wait: a failure is rethrown (an IOException as
+ |            it is, anything else unchecked as it is or wrapped), and
+ |            a stop ends the wait with a CancellationException.
+ *-------------------------------------------------------------------*/
+    private static final class Control {
+        volatile boolean stopped;
+        volatile Throwable failure;
+
+        synchronized void fail(Throwable e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+
+        <T> T take(SpscRing<T> ring) throws IOException {
+            T item;
+            for (int attempt = 0; (item = ring.poll()) == null; attempt++) {
+                check();
+                SpscRing.pause(attempt);
+            }
+            return item;
+        }
+
+        <T> void put(SpscRing<T> ring, T item) throws IOException {
+            for (int attempt = 0; !ring.offer(item); attempt++) {
+                check();
+                SpscRing.pause(attempt);
+            }
+        }
+
+        private void check() throws IOException {
+            Throwable e = failure;
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            } else if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            } else if (e instanceof Error) {
+                throw (Error) e;
+            } else if (e != null) {
+                throw new IllegalStateException(e);
+            }
+            if (stopped) {
+                throw new CancellationException("Pipeline stopped");
+            }
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Method RUN
+ |
+ |  Purpose:  Start the reader and keystream threads, combine and write
+ |            on the calling thread until the reader's last chunk, then
+ |            stop the keystream thread.
+ |
+ |  Pre-condition: keystream has not been used; the writers are open;
+ |                 inputPath has been checked with MessageStream.canRead.
+ |
+ |  Post-condition: Every kept line has been written. The keystream
+ |                  generator has run further than the file needed, so
+ |                  it must not be used afterwards.
+ |
+ |  Parameters:
+ |      inputPath -- the file to read
+ |      mapped    -- true to read it through memory mappings
+ |      keystream -- source of the keystream
+ |      encrypt   -- true to encrypt, false to decrypt
+ |      writer    -- where the output goes
+ |      console   -- a second copy of the output, or null
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if the file cannot be read or the output
+ |            cannot be written; whatever else a worker thread threw.
+ *-------------------------------------------------------------------*/
+    static void run(String inputPath, boolean mapped, KeystreamGenerator keystream,
+                    boolean encrypt, LetterWriter writer, LetterWriter console)
+            throws IOException {
+        SpscRing<Chunk> chunks = new SpscRing<>(RING_SIZE);
+        SpscRing<Chunk> freeChunks = new SpscRing<>(RING_SIZE);
+        SpscRing<byte[]> keys = new SpscRing<>(RING_SIZE);
+        SpscRing<byte[]> freeKeys = new SpscRing<>(RING_SIZE);
+        for (int i = 0; i < RING_SIZE; i++) {
+            freeChunks.put(new Chunk());
+            freeKeys.put(new byte[CHUNK_SIZE]);
+        }
+
+        Control control = new Control();
+        Thread keystreamThread = new Thread(() -> generate(keystream, keys, freeKeys, control),
+                "pipeline-keystream");
+        Thread readerThread = new Thread(() -> read(inputPath, mapped, chunks, freeChunks, control),
+                "pipeline-reader");
+        keystreamThread.setDaemon(true);
+        readerThread.setDaemon(true);
+        keystreamThread.start();
+        readerThread.start();
+
+        try {
+            combine(chunks, freeChunks, keys, freeKeys, encrypt, writer, console, control);
+        } finally {
+            control.stopped = true;
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods GENERATE and READ
+ |
+ |  Purpose:  GENERATE -- body of the keystream thread: fill free
+ |                        buffers and pass them on until stopped.
+ |            READ     -- body of the reader thread: run MessageStream
+ |                        over the file, packing letters and line ends
+ |                        into chunks, and finish with a chunk marked
+ |                        last, carrying any IOException.
+ |            Anything else either throws is handed to control.
+ |
+ |  Pre-condition: Each is run by exactly one thread.
+ |
+ |  Post-condition: GENERATE -- stop has been seen, or it has failed.
+ |                  READ     -- the last chunk has been passed on, or
+ |                              it has failed or been stopped.
+ |
+ |  Parameters:
+ |      keystream, keys, freeKeys -- see RUN
+ |      inputPath, mapped, chunks, freeChunks -- see RUN
+ |      control -- the shared stop flag and failure
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    private static void generate(KeystreamGenerator keystream, SpscRing<byte[]> keys,
+                                 SpscRing<byte[]> freeKeys, Control control) {
+        try {
+            while (true) {
+                byte[] buffer = control.take(freeKeys);
+                keystream.fill(buffer, 0, CHUNK_SIZE);
+                control.put(keys, buffer);
+            }
+        } catch (CancellationException e) {
+            // The caller has finished
+        } catch (Throwable e) {
+            control.fail(e);
+        }
+    }
+
+    private static void read(String inputPath, boolean mapped, SpscRing<Chunk> chunks,
+                             SpscRing<Chunk> freeChunks, Control control) {
+        try {
+            readChunks(inputPath, mapped, chunks, freeChunks, control);
+        } catch (CancellationException e) {
+            // The caller has finished
+        } catch (Throwable e) {
+            control.fail(e);
+        }
+    }
+
+    private static void readChunks(String inputPath, boolean mapped, SpscRing<Chunk> chunks,
+                                   SpscRing<Chunk> freeChunks, Control control)
+            throws IOException {
+        Chunk[] current = { control.take(freeChunks) };
+        current[0].clear();
+        current[0].last = false;
+        current[0].error = null;
+
+        LineHandler packer = new LineHandler() {
+            public void letters(byte[] values, int len) throws IOException {
+                int off = 0;
+                while (off < len) {
+                    Chunk chunk = current[0];
+                    if (chunk.length == CHUNK_SIZE) {
+                        control.put(chunks, chunk);
+                        chunk = control.take(freeChunks);
+                        chunk.clear();
+                        current[0] = chunk;
+                    }
+                    int count = Math.min(len - off, CHUNK_SIZE - chunk.length);
+                    System.arraycopy(values, off, chunk.values, chunk.length, count);
+                    chunk.length += count;
+                    off += count;
+                }
+            }
+
+            public void endOfLine() {
+                current[0].addBreak();
+            }
+        };
+
+        try {
+            if (mapped) {
+                MessageStream.readMapped(inputPath, packer);
+            } else {
+                MessageStream.read(inputPath, packer);
+            }
+        } catch (IOException e) {
+            current[0].error = e;
+        } catch (UncheckedIOException e) {
+            current[0].error = e.getCause();
+        }
+        current[0].last = true;
+        control.put(chunks, current[0]);
+    }
+
+/*---------------------------------------------------------------------
+ |  Method COMBINE
+ |
+ |  Purpose:  The caller's stage: take each chunk, combine its letters
+ |            with keystream values taken from the keystream ring (a
+ |            chunk may span two buffers), write them with the line
+ |            ends in the right places, and hand the chunk and used
+ |            buffers back.
+ |
+ |  Pre-condition: The reader and keystream threads are running.
+ |
+ |  Post-condition: The chunk marked last has been processed.
+ |
+ |  Parameters:  See RUN.
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if the reader failed or the output cannot be
+ |            written; whatever else a worker thread threw.
+ *-------------------------------------------------------------------*/
+    private static void combine(SpscRing<Chunk> chunks, SpscRing<Chunk> freeChunks,
+                                SpscRing<byte[]> keys, SpscRing<byte[]> freeKeys,
+                                boolean encrypt, LetterWriter writer, LetterWriter console,
+                                Control control)
+            throws IOException {
+        byte[] key = null;
+        int keyUsed = CHUNK_SIZE;
+        byte[] keyChunk = new byte[CHUNK_SIZE];
+
+        while (true) {
+            Chunk chunk = control.take(chunks);
+            if (chunk.error != null) {
+                throw chunk.error;
+            }
+
+            // Line up CHUNK_SIZE keystream values for this chunk
+            int have = 0;
+            while (have < chunk.length) {
+                if (keyUsed == CHUNK_SIZE) {
+                    if (key != null) {
+                        freeKeys.put(key);
+                    }
+                    key = control.take(keys);
+                    keyUsed = 0;
+                }
+                int count = Math.min(chunk.length - have, CHUNK_SIZE - keyUsed);
+                System.arraycopy(key, keyUsed, keyChunk, have, count);
+                keyUsed += count;
+                have += count;
+            }
+            if (encrypt) {
+                Encrypt.encryptChunk(chunk.values, keyChunk, chunk.length);
+            } else {
+                Decrypt.decryptChunk(chunk.values, keyChunk, chunk.length);
+            }
+
+            int start = 0;
+            for (int i = 0; i < chunk.breakCount; i++) {
+                write(chunk.values, start, chunk.breaks[i] - start, writer, console);
+                writer.newLine();
+                if (console != null) {
+                    console.newLine();
+                }
+                start = chunk.breaks[i];
+            }
+            write(chunk.values, start, chunk.length - start, writer, console);
+
+            boolean last = chunk.last;
+            chunk.clear();
+            freeChunks.put(chunk);
+            if (last) {
+                return;
+            }
+        }
+    }
+
+    private static void write(byte[] values, int off, int len, LetterWriter writer,
+                              LetterWriter console) throws IOException {
+        writer.write(values, off, len);
+        if (console != null) {
+            console.write(values, off, len);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class RecordCipher
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  The record mode of Encrypt and Decrypt (-records), in
+ ||                   which every line is an independent record with its
+ ||                   own keystream, so the lines can be encrypted and
+ ||                   decrypted in parallel.
+ ||
+ ||                   Each record gets a random nonce of NONCE_LENGTH
+ ||                   letters. Its starting deck is the base deck keyed
+ ||                   with the nonce the way Solitaire keys a deck with a
+ ||                   passphrase: for every nonce letter, one full
+ ||                   Solitaire step followed by a count cut by the
+ ||                   letter's value. An encrypted record is written as
+ ||                   the nonce followed by the ciphertext, so Decrypt can
+ ||                   rebuild the same deck. NONCE_LENGTH is a multiple of
+ ||                   5, so the lines keep the usual padding.
+ ||
+ ||                   As a LineHandler it collects lines from
+ ||                   MessageStream into batches of up to BATCH_RECORDS
+ ||                   records or BATCH_LETTERS letters, processes each
+ ||                   batch on the common fork-join pool, and writes the
+ ||                   records out in their original order.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  LineHandler
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  NONCE_LENGTH, BATCH_RECORDS, BATCH_LETTERS,
+ ||                   SPLIT_RECORDS
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  RecordCipher(int[] baseCards, boolean encrypt, LetterWriter writer,
+ ||                               LetterWriter console)
+ ||                        – Encrypts or decrypts records from a base deck.
+ ||
+ ||  Class Methods:  Deck recordDeck(int[] baseCards, byte[] record)
+ ||                        – The starting deck for a record's nonce.
+ ||
+ ||  Inst. Methods:  void letters(byte[] values, int len), void endOfLine()
+ ||                        – Collect the lines of the input.
+ ||
+ ||                   void finish()
+ ||                        – Processes and writes the last batch.
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+class RecordCipher implements LineHandler {
+    static final int NONCE_LENGTH = 15;
+    static final int BATCH_RECORDS = 4096;
+    static final int BATCH_LETTERS = 1 << 22;
+    static final int SPLIT_RECORDS = 16;    // Records a fork-join task handles without splitting
+
+    private final int[] baseCards;
+    private final boolean encrypt;
+    private final LetterWriter writer;
+    private final LetterWriter console;       // Or null
+    private final SecureRandom random;        // Nonces; only used when encrypting
+    private final List<byte[]> batch = new ArrayList<>();
+    private long batchLetters;
+    private byte[] line = new byte[MessageStream.CHUNK_SIZE];
+    private int lineLength;
+    private long records;                     // Records read so far, for error messages
+
+/*---------------------------------------------------------------------
+ |  Constructor RecordCipher
+ |
+ |  Purpose:  Prepare to encrypt or decrypt the records of one file.
+ |
+ |  Pre-condition: baseCards holds the 28 cards of the deck file; the
+ |                 writers are open.
+ |
+ |  Post-condition: No records have been read.
+ |
+ |  Parameters:
+ |      baseCards -- the deck the record decks are derived from
+ |      encrypt   -- true to encrypt, false to decrypt
+ |      writer    -- where the records are written
+ |      console   -- a second copy of the output, or null
+ |
+ |  Returns:  None (constructor)
+ *-------------------------------------------------------------------*/
+    RecordCipher(int[] baseCards, boolean encrypt, LetterWriter writer, LetterWriter console) {
+        this.baseCards = baseCards.clone();
+        this.encrypt = encrypt;
+        this.writer = writer;
+        this.console = console;
+        this.random = encrypt ? new SecureRandom() : null;
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods LETTERS and END_OF_LINE
+ |
+ |  Purpose:  LETTERS     -- append letters to the current line.
+ |            END_OF_LINE -- turn the line into a record: when
+ |                           encrypting, a new nonce followed by the
+ |                           plaintext; when decrypting, the line as it
+ |                           is, which must start with a nonce. A full
+ |                           batch is then processed and written.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: The line has been added to the batch.
+ |
+ |  Parameters:
+ |      values -- letter values, 1–26
+ |      len    -- number of values
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if an encrypted line is too short to hold a
+ |            nonce or the output cannot be written.
+ *-------------------------------------------------------------------*/
+    public void letters(byte[] values, int len) {
+        if (lineLength + len > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + len));
+        }
+        System.arraycopy(values, 0, line, lineLength, len);
+        lineLength += len;
+    }
+
+    public void endOfLine() throws IOException {
+        records++;
+        byte[] record;
+        if (encrypt) {
+            record = new byte[NONCE_LENGTH + lineLength];
+            for (int i = 0; i < NONCE_LENGTH; i++) {
+                record[i] = (byte) (random.nextInt(26) + 1);
+            }
+            System.arraycopy(line, 0, record, NONCE_LENGTH, lineLength);
+        } else {
+            if (lineLength < NONCE_LENGTH) {
+                throw new IOException("record " + records + " is too short to hold a nonce");
+            }
+            record = Arrays.copyOf(line, lineLength);
+        }
+        lineLength = 0;
+
+        batch.add(record);
+        batchLetters += record.length;
+        if (batch.size() >= BATCH_RECORDS || batchLetters >= BATCH_LETTERS) {
+            flush();
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods FINISH and FLUSH
+ |
+ |  Purpose:  FLUSH  -- encrypt or decrypt every record of the batch in
+ |                      place on the common fork-join pool, then write
+ |                      them in order: whole records when encrypting,
+ |                      the text after the nonce when decrypting.
+ |            FINISH -- flush the last, partly filled batch.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: The batch has been written and emptied.
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if the output cannot be written.
+ *-------------------------------------------------------------------*/
+    void finish() throws IOException {
+        flush();
+    }
+
+    private void flush() throws IOException {
+        ForkJoinPool.commonPool().invoke(new Batch(0, batch.size()));
+
+        int start = encrypt ? 0 : NONCE_LENGTH;
+        for (byte[] record : batch) {
+            writer.write(record, start, record.length - start);
+            writer.newLine();
+            if (console != null) {
+                console.write(record, start, record.length - start);
+                console.newLine();
+            }
+        }
+        batch.clear();
+        batchLetters = 0;
+    }
+
+/*---------------------------------------------------------------------
+ |  Class Batch
+ |
+ |  Purpose:  Fork-join task for the records batch[from .. to - 1]. A
+ |            range of more than SPLIT_RECORDS records is split in two;
+ |            a smaller one is processed record by record with one
+ |            keystream buffer.
+ *-------------------------------------------------------------------*/
+    private class Batch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+
+        Batch(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_RECORDS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Batch(from, middle), new Batch(middle, to));
+                return;
+            }
+            byte[] keyChunk = new byte[MessageStream.CHUNK_SIZE];
+            for (int i = from; i < to; i++) {
+                process(batch.get(i), keyChunk);
+            }
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods PROCESS and RECORD_DECK
+ |
+ |  Purpose:  PROCESS     -- encrypt or decrypt the text of one record in
+ |                           place with the keystream of its own deck.
+ |            RECORD_DECK -- key a copy of the base deck with the first
+ |                           NONCE_LENGTH values of a record: for each
+ |                           nonce letter, move both jokers, triple cut
+ |                           and count cut, then count cut by the
+ |                           letter's value.
+ |
+ |  Pre-condition: record holds at least NONCE_LENGTH values, all 1–26.
+ |
+ |  Post-condition: PROCESS -- the text after the nonce has been
+ |                  replaced. The base deck is never changed.
+ |
+ |  Parameters:
+ |      record    -- nonce followed by text
+ |      keyChunk  -- scratch buffer for keystream values
+ |      baseCards -- the base deck
+ |
+ |  Returns:  PROCESS: None (void); RECORD_DECK: the keyed deck.
+ *-------------------------------------------------------------------*/
+    private void process(byte[] record, byte[] keyChunk) {
+        KeystreamGenerator keystream =
+                new KeystreamGenerator(SolitaireDeck.select(recordDeck(baseCards, record)));
+        for (int start = NONCE_LENGTH; start < record.length; start += keyChunk.length) {
+            int length = Math.min(keyChunk.length, record.length - start);
+            keystream.fill(keyChunk, 0, length);
+            if (encrypt) {
+                Combiner.INSTANCE.encrypt(record, start, keyChunk, 0, length);
+            } else {
+                Combiner.INSTANCE.decrypt(record, start, keyChunk, 0, length);
+            }
+        }
+    }
+
+    static Deck recordDeck(int[] baseCards, byte[] record) {
+        Deck deck = new Deck();
+        deck.setDeck(baseCards);
+        for (int i = 0; i < NONCE_LENGTH; i++) {
+            deck.moveJoker27();
+            deck.moveJoker28();
+            deck.tripleCut();
+            deck.countCut();
+            deck.countCut(record[i]);
+        }
+        return deck;
+    }
+}
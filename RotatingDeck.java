@@ -0,0 +1,292 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class RotatingDeck
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  A deck of 28 cards stored in a circular buffer with a
+ ||                   logical start offset. The count cut and triple cut
+ ||                   are (mostly) rotations of the deck, so instead of
+ ||                   moving every card they advance the offset and only
+ ||                   move the cards that a rotation alone cannot place.
+ ||                   The card order after each operation is identical
+ ||                   to Deck.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  SolitaireDeck
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  RotatingDeck(int[] cards)
+ ||                        – Copies a 28-card deck into the buffer.
+ ||
+ ||  Class Methods:  None
+ ||
+ ||  Inst. Methods:  void moveJoker27(), void moveJoker28(),
+ ||                   void tripleCut(), void countCut()
+ ||                        – The Solitaire deck manipulations.
+ ||
+ ||                   int cardAt(int position)
+ ||                        – Returns the card at a logical position.
+ ||
+ ||                   private void swapBlocks(int from, int leftLength, int rightLength)
+ ||                        – Exchanges two adjacent runs of cards.
+ ||
+ ++-----------------------------------------------------------------------*/
+
+class RotatingDeck implements SolitaireDeck {
+    private final int[] buffer;   // Cards in physical order; logical 0 is buffer[start]
+    private final int[] slot;     // slot[card] is the physical index of that card
+    private final int[] scratch;  // Holds the shorter run during swapBlocks
+    private int start;            // Physical index of the top card
+
+/*---------------------------------------------------------------------
+ |  Constructor RotatingDeck
+ |
+ |  Purpose:  Copy the cards of an existing deck into the circular
+ |            buffer, with the top card at physical index 0.
+ |
+ |  Pre-condition: cards holds 28 card values in the range 0–28.
+ |
+ |  Post-condition: cardAt(i) == cards[i] for every i; cards is not
+ |                  referenced afterwards.
+ |
+ |  Parameters:
+ |      cards -- the deck to copy, top card first
+ |
+ |  Returns:  None (constructor)
+ *-------------------------------------------------------------------*/
+    RotatingDeck(int[] cards) {
+        this.buffer = new int[28];
+        this.slot = new int[29];
+        this.scratch = new int[28];
+        for (int i = 0; i < 28; i++) {
+            buffer[i] = cards[i];
+            slot[cards[i]] = i;
+        }
+        this.start = 0;
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods PHYSICAL, LOGICAL, PUT and CARD_AT
+ |
+ |  Purpose:  Translate between logical positions (0 = top of the
+ |            deck) and physical indices in the buffer, and read or
+ |            write a card at a logical position. put() also keeps the
+ |            slot index up to date.
+ |
+ |  Pre-condition: position is in 0–27; card is in 0–28.
+ |
+ |  Post-condition: Only put() modifies the deck.
+ |
+ |  Parameters:
+ |      position -- a logical position in the deck
+ |      index    -- a physical index in the buffer
+ |      card     -- the card to store
+ |
+ |  Returns:  PHYSICAL: the physical index; LOGICAL: the logical
+ |            position; CARD_AT: the card; PUT: None (void)
+ *-------------------------------------------------------------------*/
+    private int physical(int position) {
+        int index = start + position;
+        return index >= 28 ? index - 28 : index;
+    }
+
+    private int logical(int index) {
+        int position = index - start;
+        return position < 0 ? position + 28 : position;
+    }
+
+    private void put(int position, int card) {
+        int index = physical(position);
+        buffer[index] = card;
+        slot[card] = index;
+    }
+
+    public int cardAt(int position) {
+        return buffer[physical(position)];
+    }
+
+/*---------------------------------------------------------------------
+ |  Method ROTATE
+ |
+ |  Purpose:  Rotate the whole deck so that the card at logical
+ |            position count becomes the top card. Only the start
+ |            offset changes; no card is moved.
+ |
+ |  Pre-condition: count is in 0–28.
+ |
+ |  Post-condition: The deck is rotated left by count positions.
+ |
+ |  Parameters:
+ |      count -- number of cards moved from the top to the bottom
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    private void rotate(int count) {
+        start = physical(count == 28 ? 0 : count);
+    }
+
+/*---------------------------------------------------------------------
+ |  Method SWAP_BLOCKS
+ |
+ |  Purpose:  Exchange the run of leftLength cards starting at logical
+ |            position from with the run of rightLength cards that
+ |            follows it, keeping each run in order. The shorter run
+ |            is parked in scratch, the longer one is shifted over it,
+ |            and the shorter run is written back, so the number of
+ |            card writes is the total length plus the shorter length.
+ |
+ |  Pre-condition: from + leftLength + rightLength <= 28.
+ |
+ |  Post-condition: The two runs have traded places; all other cards
+ |                  are unchanged.
+ |
+ |  Parameters:
+ |      from        -- logical position of the first run
+ |      leftLength  -- number of cards in the first run
+ |      rightLength -- number of cards in the second run
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    private void swapBlocks(int from, int leftLength, int rightLength) {
+        if (leftLength == 0 || rightLength == 0) {
+            return;
+        }
+
+        if (leftLength <= rightLength) {
+            for (int i = 0; i < leftLength; i++) {
+                scratch[i] = cardAt(from + i);
+            }
+            for (int i = 0; i < rightLength; i++) {
+                put(from + i, cardAt(from + leftLength + i));
+            }
+            for (int i = 0; i < leftLength; i++) {
+                put(from + rightLength + i, scratch[i]);
+            }
+        } else {
+            for (int i = 0; i < rightLength; i++) {
+                scratch[i] = cardAt(from + leftLength + i);
+            }
+            for (int i = leftLength - 1; i >= 0; i--) {
+                put(from + rightLength + i, cardAt(from + i));
+            }
+            for (int i = 0; i < rightLength; i++) {
+                put(from + i, scratch[i]);
+            }
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods MOVE_JOKER27 and MOVE_JOKER28
+ |
+ |  Purpose:  Move joker A down one position and joker B down two
+ |            positions, exactly as Deck does: a joker on the bottom
+ |            card trades places with the top card.
+ |
+ |  Pre-condition: The deck contains 27 and 28 exactly once.
+ |
+ |  Post-condition: The joker has been moved; all other cards keep
+ |                  their order.
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    public void moveJoker27() {
+        moveDown(27);
+    }
+
+    public void moveJoker28() {
+        moveDown(28);
+        moveDown(28);
+    }
+
+    private void moveDown(int joker) {
+        int position = logical(slot[joker]);
+        int next = position == 27 ? 0 : position + 1;
+        int other = cardAt(next);
+        put(position, other);
+        put(next, joker);
+    }
+
+/*---------------------------------------------------------------------
+ |  Method TRIPLE_CUT
+ |
+ |  Purpose:  Turn top|jokers|bottom into bottom|jokers|top. There are
+ |            two ways to get there with one rotation: rotate the
+ |            middle run to the top and then swap it with the bottom
+ |            run, or rotate the bottom run to the top and then swap
+ |            the old top run with the middle run. The one needing
+ |            fewer card writes is used; when the top or the bottom run
+ |            is empty it is a pure rotation.
+ |
+ |  Pre-condition: The deck contains both jokers.
+ |
+ |  Post-condition: The deck matches Deck.tripleCut().
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    public void tripleCut() {
+        int index27 = logical(slot[27]);
+        int index28 = logical(slot[28]);
+        int firstJoker = Math.min(index27, index28);
+        int secondJoker = Math.max(index27, index28);
+
+        int top = firstJoker;
+        int middle = secondJoker - firstJoker + 1;
+        int bottom = 27 - secondJoker;
+
+        int middleFirstCost = middle + bottom + Math.min(middle, bottom);
+        int bottomFirstCost = top + middle + Math.min(top, middle);
+
+        if (bottom == 0 || (top != 0 && middleFirstCost <= bottomFirstCost)) {
+            rotate(top);                       // middle | bottom | top
+            swapBlocks(0, middle, bottom);     // bottom | middle | top
+        } else {
+            rotate(secondJoker + 1);           // bottom | top | middle
+            swapBlocks(bottom, top, middle);   // bottom | middle | top
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Method COUNT_CUT
+ |
+ |  Purpose:  Move the top n cards (n = value of the bottom card) to
+ |            just above the bottom card. Either rotate by n and then
+ |            slide the bottom card past the n cards that wrapped
+ |            around (n + 1 writes), or first slide the bottom card up
+ |            to position n and then rotate by n + 1 (28 - n writes),
+ |            whichever is cheaper.
+ |
+ |  Pre-condition: The bottom card is a valid card value (1–28).
+ |
+ |  Post-condition: The deck matches Deck.countCut(); nothing changes
+ |                  if the bottom card is a joker.
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    public void countCut() {
+        int bottomCard = cardAt(27);
+        if (bottomCard == 27 || bottomCard == 28) {
+            return;
+        }
+
+        if (bottomCard <= 13) {
+            rotate(bottomCard);
+            swapBlocks(27 - bottomCard, 1, bottomCard);
+        } else {
+            swapBlocks(bottomCard, 27 - bottomCard, 1);
+            rotate(bottomCard + 1);
+        }
+    }
+}
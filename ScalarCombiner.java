@@ -0,0 +1,60 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class ScalarCombiner
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  The plain Combiner: one value at a time, as
+ ||                   Encrypt and Decrypt always did it. VectorCombiner
+ ||                   also uses it for the values left over after its
+ ||                   last full vector.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  Combiner
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  ScalarCombiner()
+ ||
+ ||  Class Methods:  void encryptRange(byte[] values, int off, byte[] key, int keyOff, int len)
+ ||                   void decryptRange(byte[] values, int off, byte[] key, int keyOff, int len)
+ ||                        – The loops behind encrypt and decrypt.
+ ||
+ ||  Inst. Methods:  void encrypt(...), void decrypt(...)
+ ||                        – See Combiner.
+ ||
+ ++-----------------------------------------------------------------------*/
+
+class ScalarCombiner implements Combiner {
+
+    public void encrypt(byte[] values, int off, byte[] key, int keyOff, int len) {
+        encryptRange(values, off, key, keyOff, len);
+    }
+
+    public void decrypt(byte[] values, int off, byte[] key, int keyOff, int len) {
+        decryptRange(values, off, key, keyOff, len);
+    }
+
+    // The sum of two values 1–26 is 2–52, so mod 26 with 0 mapped to 26
+    // is just "subtract 26 if over 26"
+    static void encryptRange(byte[] values, int off, byte[] key, int keyOff, int len) {
+        for (int j = 0; j < len; j++) {
+            int sum = values[off + j] + key[keyOff + j];
+            if (sum > 26) sum -= 26;
+            values[off + j] = (byte) sum;
+        }
+    }
+
+    static void decryptRange(byte[] values, int off, byte[] key, int keyOff, int len) {
+        for (int j = 0; j < len; j++) {
+            int difference = values[off + j] - key[keyOff + j];
+            if (difference <= 0) difference += 26;
+            values[off + j] = (byte) difference;
+        }
+    }
+}
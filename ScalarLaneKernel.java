@@ -0,0 +1,118 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class ScalarLaneKernel
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  The plain LaneKernel: one lane at a time. A lane's 28
+ ||                   positions are copied into a local array, advanced
+ ||                   with the position formulas of LaneKernel (written as
+ ||                   conditional expressions rather than if statements,
+ ||                   so they can compile to conditional moves), and
+ ||                   copied back after the last step. VectorLaneKernel
+ ||                   runs the same formulas a vector of lanes at a time.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  LaneKernel
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  ScalarLaneKernel()
+ ||
+ ||  Class Methods:  int swap(int p, int x, int y)
+ ||                        – Position p after swapping positions x and y.
+ ||
+ ||                   int below(int x)
+ ||                        – The position a joker at x moves to.
+ ||
+ ||  Inst. Methods:  void steps(byte[] positions, int stride, byte[] out, int count)
+ ||                        – See LaneKernel.
+ ||
+ ++-----------------------------------------------------------------------*/
+
+class ScalarLaneKernel implements LaneKernel {
+
+    public void steps(byte[] positions, int stride, byte[] out, int count) {
+        int[] p = new int[28];
+        for (int lane = 0; lane < stride; lane++) {
+            for (int i = 0; i < 28; i++) {
+                p[i] = positions[i * stride + lane];
+            }
+            for (int s = 0; s < count; s++) {
+                out[s * stride + lane] = (byte) step(p);
+            }
+            for (int i = 0; i < 28; i++) {
+                positions[i * stride + lane] = (byte) p[i];
+            }
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Method STEP
+ |
+ |  Purpose:  One Solitaire step on one deck, in three passes over the
+ |            cards: (1) both joker moves and the triple cut, finding
+ |            the bottom card; (2) the count cut, finding the top card;
+ |            (3) finding the output card. Where the jokers end up
+ |            after the moves is worked out first from their starting
+ |            positions, so the first pass can do all three operations
+ |            on each card in turn.
+ |
+ |  Pre-condition: p[card - 1] is the position of card in a valid deck.
+ |
+ |  Post-condition: The deck has been advanced one step.
+ |
+ |  Parameters:
+ |      p -- the deck's card positions, updated in place
+ |
+ |  Returns:  The output card, 1–26, or 0 if it was a joker.
+ *-------------------------------------------------------------------*/
+    private static int step(int[] p) {
+        // Joker A swaps from a to ta; then joker B twice, b0 -> t1 -> t2
+        int a = p[26];
+        int ta = below(a);
+        int b0 = swap(p[27], a, ta);
+        int t1 = below(b0);
+        int t2 = below(t1);
+        int jokerA = swap(swap(ta, b0, t1), t1, t2);
+        int lo = Math.min(jokerA, t2);
+        int hi = Math.max(jokerA, t2);
+
+        int bottom = 0;
+        for (int i = 0; i < 28; i++) {
+            int x = swap(swap(swap(p[i], a, ta), b0, t1), t1, t2);
+            x = x > hi ? x - hi - 1 : x < lo ? x + 28 - lo : x - lo + 27 - hi;
+            p[i] = x;
+            bottom = x == 27 ? i + 1 : bottom;
+        }
+
+        int k = bottom >= 27 ? 0 : bottom;
+        int top = 0;
+        for (int i = 0; i < 28; i++) {
+            int x = p[i];
+            x = x == 27 ? 27 : x < k ? x + 27 - k : x - k;
+            p[i] = x;
+            top = x == 0 ? i + 1 : top;
+        }
+
+        int q = Math.min(top, 27);
+        int output = 0;
+        for (int i = 0; i < 28; i++) {
+            output = p[i] == q ? i + 1 : output;
+        }
+        return output >= 27 ? 0 : output;
+    }
+
+    static int swap(int p, int x, int y) {
+        return p == x ? y : p == y ? x : p;
+    }
+
+    static int below(int x) {
+        return x == 27 ? 0 : x + 1;
+    }
+}
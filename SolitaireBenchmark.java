@@ -0,0 +1,808 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class SolitaireBenchmark
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Stand-alone benchmark suite for the whole program,
+ ||                   in the same spirit as DeckBenchmark. It times
+ ||                   each single deck operation (moveJoker27, moveJoker28,
+ ||                   tripleCut, countCut) for every deck representation,
+ ||                   keystream generation through
+ ||                   Keystream.encryptionAlgorithm and KeystreamGenerator,
+ ||                   many decks at once through MultiDeck against the
+ ||                   same decks one after another,
+ ||                   the scalar and vector Combiner kernels, deck file
+ ||                   parsing (text, binary and cached),
+ ||                   message cleaning and conversion, and full encryption
+ ||                   and decryption of generated text files of 1 KB and
+ ||                   1 MB (and 1 GB with -large).
+ ||
+ ||                   Every result shows the best and average throughput
+ ||                   and, like a gc profiler, the bytes allocated per
+ ||                   unit of work and the collections that happened while
+ ||                   it was measured, so a change that starts allocating
+ ||                   in the hot path shows up straight away.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  WARMUP_ROUNDS, MEASURE_ROUNDS, OPS_PER_ROUND,
+ ||                   MIN_BYTES_PER_ROUND, CORPUS_SIZES, LARGE_CORPUS_SIZE,
+ ||                   LINE_LENGTH, BENCH_LANES, LANE_COUNTS, LANE_FILLS,
+ ||                   CLEAN, ENCRYPT, DECRYPT
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  None
+ ||
+ ||  Class Methods:  void main(String[] args)
+ ||                        – Runs every benchmark on the given deck file.
+ ||
+ ||                   void verifyCombine()
+ ||                        – Checks Combiner.INSTANCE against ScalarCombiner.
+ ||
+ ||                   void verifyLanes()
+ ||                        – Checks MultiDeck against KeystreamGenerator.
+ ||
+ ||                   void measure(String name, String unit, long units,
+ ||                                int warmup, int rounds, Workload body)
+ ||                        – Times one workload and prints the result.
+ ||
+ ||                   Path writeCorpus(Path dir, long size)
+ ||                        – Writes a generated plaintext file.
+ ||
+ ||                   long runFile(String deckPath, Path input, Path output, int mode)
+ ||                        – Cleans, encrypts or decrypts one file.
+ ||
+ ||  Inst. Methods:  None
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+class SolitaireBenchmark {
+    static final int WARMUP_ROUNDS = 5;
+    static final int MEASURE_ROUNDS = 10;
+    static final int OPS_PER_ROUND = 1_000_000;
+    static final int MIN_BYTES_PER_ROUND = 1 << 20;    // Small files are repeated up to this
+    static final int[] CORPUS_SIZES = {1 << 10, 1 << 20};
+    static final long LARGE_CORPUS_SIZE = 1L << 30;
+    static final int LINE_LENGTH = 72;
+    static final int BENCH_LANES = 1024;
+    static final int[] LANE_COUNTS = {1, 63, 64, 200};        // verifyLanes
+    static final int[] LANE_FILLS = {1, 0, 7, 64, 1000, 3, 4096};
+
+    static final int CLEAN = 0;      // runFile modes
+    static final int ENCRYPT = 1;
+    static final int DECRYPT = 2;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // One round of a benchmark. The result is a checksum, printed so the
+    // work cannot be optimized away.
+    private interface Workload {
+        long run() throws IOException;
+    }
+
+/*---------------------------------------------------------------------
+ |  Method MAIN
+ |
+ |  Purpose:  Run the deck, keystream, message and end-to-end benchmarks
+ |            in that order. The end-to-end runs use the representation
+ |            chosen with -Dsolitaire.deck, like Encrypt and Decrypt.
+ |            The generated files are written to a temporary directory
+ |            that is removed afterwards.
+ |
+ |  Pre-condition: The deck file, args[0] or prog1deck.dat in the
+ |                 current directory, is valid. -large needs about 3 GB
+ |                 of free space in the temporary directory.
+ |
+ |  Post-condition: The results are printed to standard output.
+ |
+ |  Parameters:
+ |      args -- optional -large, then the optional path to the deck file
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if the generated files cannot be written.
+ *-------------------------------------------------------------------*/
+    public static void main(String[] args) throws IOException {
+        boolean large = false;
+        List<String> files = new ArrayList<>();
+        for (String arg : args) {
+            switch (arg) {
+                case "-large": large = true; break;
+                default: files.add(arg);
+            }
+        }
+        String deckPath = files.isEmpty() ? "prog1deck.dat" : files.get(0);
+        int[] cards = newDeck(deckPath).getDeck().clone();
+
+        if (THREADS.isThreadAllocatedMemorySupported()) {
+            THREADS.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        benchDeckOperations("Deck", newDeck(deckPath), newDeck(deckPath),
+                newDeck(deckPath), newDeck(deckPath));
+        benchDeckOperations("RotatingDeck", new RotatingDeck(cards), new RotatingDeck(cards),
+                new RotatingDeck(cards), new RotatingDeck(cards));
+        benchDeckOperations("PackedDeck", new PackedDeck(cards), new PackedDeck(cards),
+                new PackedDeck(cards), new PackedDeck(cards));
+
+        benchKeystream(deckPath);
+        benchLanes(deckPath);
+        benchCombine();
+
+        Path dir = Files.createTempDirectory("solitaire-bench");
+        try {
+            benchDeckFiles(deckPath, dir);
+            for (int size : CORPUS_SIZES) {
+                benchFiles(deckPath, dir, size, true);
+            }
+            if (large) {
+                benchFiles(deckPath, dir, LARGE_CORPUS_SIZE, false);
+            }
+        } finally {
+            try (var leftovers = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) leftovers::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static Deck newDeck(String deckPath) {
+        Deck deck = new Deck();
+        deck.setDeck(deckPath);
+        return deck;
+    }
+
+/*---------------------------------------------------------------------
+ |  Method BENCH_DECK_OPERATIONS
+ |
+ |  Purpose:  Time each of the four deck operations on its own, one
+ |            deck per operation, OPS_PER_ROUND calls per round. A
+ |            count cut never changes the bottom card, so repeating it
+ |            on a deck with a joker at the bottom would time a no-op;
+ |            that deck is first advanced until a plain card is at the
+ |            bottom.
+ |
+ |  Pre-condition: All four decks start from a valid card order.
+ |
+ |  Post-condition: The decks have been advanced; results are printed.
+ |
+ |  Parameters:
+ |      name                      -- the representation, for the report
+ |      joker27, joker28, triple,
+ |      count                     -- the decks to run each operation on
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException never in practice; declared by measure.
+ *-------------------------------------------------------------------*/
+    private static void benchDeckOperations(String name, SolitaireDeck joker27,
+                                            SolitaireDeck joker28, SolitaireDeck triple,
+                                            SolitaireDeck count) throws IOException {
+        while (count.cardAt(27) >= 27) {
+            DeckBenchmark.runSteps(count, 1);
+        }
+        measure(name + ".moveJoker27", "ops", OPS_PER_ROUND, WARMUP_ROUNDS, MEASURE_ROUNDS, () -> {
+            for (int i = 0; i < OPS_PER_ROUND; i++) {
+                joker27.moveJoker27();
+            }
+            return joker27.cardAt(0);
+        });
+        measure(name + ".moveJoker28", "ops", OPS_PER_ROUND, WARMUP_ROUNDS, MEASURE_ROUNDS, () -> {
+            for (int i = 0; i < OPS_PER_ROUND; i++) {
+                joker28.moveJoker28();
+            }
+            return joker28.cardAt(0);
+        });
+        measure(name + ".tripleCut", "ops", OPS_PER_ROUND, WARMUP_ROUNDS, MEASURE_ROUNDS, () -> {
+            for (int i = 0; i < OPS_PER_ROUND; i++) {
+                triple.tripleCut();
+            }
+            return triple.cardAt(0);
+        });
+        measure(name + ".countCut", "ops", OPS_PER_ROUND, WARMUP_ROUNDS, MEASURE_ROUNDS, () -> {
+            for (int i = 0; i < OPS_PER_ROUND; i++) {
+                count.countCut();
+            }
+            return count.cardAt(0);
+        });
+    }
+
+/*---------------------------------------------------------------------
+ |  Method BENCH_KEYSTREAM
+ |
+ |  Purpose:  Time keystream generation for one message of
+ |            OPS_PER_ROUND letters, both all at once through
+ |            Keystream.encryptionAlgorithm and a chunk at a time through
+ |            KeystreamGenerator.fill, and skipping the same number of
+ |            values with KeystreamGenerator.skip.
+ |
+ |  Pre-condition: deckPath names a valid deck file.
+ |
+ |  Post-condition: Results are printed.
+ |
+ |  Parameters:
+ |      deckPath -- the deck file
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException never in practice; declared by measure.
+ *-------------------------------------------------------------------*/
+    private static void benchKeystream(String deckPath) throws IOException {
+        List<int[]> numbers = List.of(new int[OPS_PER_ROUND]);
+        Keystream keystream = new Keystream();
+        SolitaireDeck deck = SolitaireDeck.select(newDeck(deckPath));
+        measure("Keystream.encryptionAlgorithm", "values", OPS_PER_ROUND,
+                WARMUP_ROUNDS, MEASURE_ROUNDS, () -> {
+            byte[] values = keystream.encryptionAlgorithm(numbers, deck);
+            return values[OPS_PER_ROUND - 1];
+        });
+
+        KeystreamGenerator generator = new KeystreamGenerator(SolitaireDeck.select(newDeck(deckPath)));
+        byte[] chunk = new byte[MessageStream.CHUNK_SIZE];
+        measure("KeystreamGenerator.fill", "values", OPS_PER_ROUND,
+                WARMUP_ROUNDS, MEASURE_ROUNDS, () -> {
+            for (int done = 0; done < OPS_PER_ROUND; done += chunk.length) {
+                generator.fill(chunk, 0, Math.min(chunk.length, OPS_PER_ROUND - done));
+            }
+            return chunk[0];
+        });
+
+        KeystreamGenerator skipper = new KeystreamGenerator(SolitaireDeck.select(newDeck(deckPath)));
+        measure("KeystreamGenerator.skip", "values", OPS_PER_ROUND,
+                WARMUP_ROUNDS, MEASURE_ROUNDS, () -> {
+            skipper.skip(OPS_PER_ROUND);
+            return skipper.position();
+        });
+    }
+
+/*---------------------------------------------------------------------
+ |  Method BENCH_LANES
+ |
+ |  Purpose:  Time the keystreams of BENCH_LANES different decks (the
+ |            deck file's deck advanced a different number of steps
+ |            for each), about OPS_PER_ROUND values in all per round: with a
+ |            KeystreamGenerator per deck, filled one deck after
+ |            another, and with one MultiDeck, whose LaneKernel is chosen
+ |            by -Dsolitaire.lanes, after checking it with verifyLanes.
+ |
+ |  Pre-condition: deckPath names a valid deck file.
+ |
+ |  Post-condition: Results are printed.
+ |
+ |  Parameters:
+ |      deckPath -- the deck file
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException never in practice; declared by measure.
+ *-------------------------------------------------------------------*/
+    private static void benchLanes(String deckPath) throws IOException {
+        verifyLanes();
+        int perLane = OPS_PER_ROUND / BENCH_LANES;
+        KeystreamGenerator start = new KeystreamGenerator(SolitaireDeck.select(newDeck(deckPath)));
+        DeckState[] decks = new DeckState[BENCH_LANES];
+        KeystreamGenerator[] generators = new KeystreamGenerator[BENCH_LANES];
+        for (int i = 0; i < BENCH_LANES; i++) {
+            start.skip(1);
+            decks[i] = start.state();
+            generators[i] = decks[i].generator();
+        }
+
+        int total = perLane * BENCH_LANES;
+        byte[] values = new byte[total];
+        measure("KeystreamGenerator x " + BENCH_LANES, "values", total,
+                WARMUP_ROUNDS, MEASURE_ROUNDS, () -> {
+            for (int i = 0; i < BENCH_LANES; i++) {
+                generators[i].fill(values, i * perLane, perLane);
+            }
+            return values[total - 1];
+        });
+
+        MultiDeck lanes = new MultiDeck(decks);
+        measure("MultiDeck " + LaneKernel.INSTANCE.getClass().getName() + " x " + BENCH_LANES,
+                "values", total, WARMUP_ROUNDS, MEASURE_ROUNDS, () -> {
+            lanes.fill(values, perLane);
+            return values[total - 1];
+        });
+    }
+
+/*---------------------------------------------------------------------
+ |  Method VERIFY_LANES
+ |
+ |  Purpose:  For each of LANE_COUNTS, start a MultiDeck and one
+ |            KeystreamGenerator per lane from the same shuffled decks,
+ |            then fill both with each of LANE_FILLS values per lane in
+ |            turn and compare every lane with its generator. The lane
+ |            counts include ones that are not a multiple of
+ |            LaneKernel.LANE_MULTIPLE, and the fills are repeated at
+ |            uneven lengths, so padding lanes and the carry between
+ |            fills are both covered.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: A line is printed if every lane matches; if any lane
+ |                  ever differs an IllegalStateException is thrown.
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    static void verifyLanes() {
+        String name = LaneKernel.INSTANCE.getClass().getName();
+        Random random = new Random(25);
+        for (int lanes : LANE_COUNTS) {
+            DeckState[] decks = new DeckState[lanes];
+            KeystreamGenerator[] generators = new KeystreamGenerator[lanes];
+            for (int i = 0; i < lanes; i++) {
+                int[] cards = new int[DeckState.DECK_SIZE];
+                for (int j = 0; j < cards.length; j++) {
+                    int k = random.nextInt(j + 1);
+                    cards[j] = cards[k];
+                    cards[k] = j + 1;
+                }
+                decks[i] = DeckState.of(cards);
+                generators[i] = decks[i].generator();
+            }
+
+            MultiDeck multi = new MultiDeck(decks);
+            for (int fill = 0; fill < LANE_FILLS.length; fill++) {
+                int len = LANE_FILLS[fill];
+                byte[] values = new byte[lanes * len];
+                byte[] expected = new byte[len];
+                multi.fill(values, len);
+                for (int lane = 0; lane < lanes; lane++) {
+                    generators[lane].fill(expected, 0, len);
+                    if (!Arrays.equals(expected, 0, len, values, lane * len, lane * len + len)) {
+                        throw new IllegalStateException("MultiDeck with " + name + " differs from "
+                                + "KeystreamGenerator in lane " + lane + " of " + lanes
+                                + ", fill " + fill);
+                    }
+                }
+            }
+        }
+        System.out.printf("MultiDeck with %s matches KeystreamGenerator for %d lane counts%n",
+                name, LANE_COUNTS.length);
+    }
+
+/*---------------------------------------------------------------------
+ |  Method BENCH_COMBINE
+ |
+ |  Purpose:  Time encrypting and decrypting a buffer of OPS_PER_ROUND
+ |            values with ScalarCombiner and with Combiner.INSTANCE
+ |            (VectorCombiner when it is compiled and the JVM was started
+ |            with --add-modules jdk.incubator.vector), after checking
+ |            with verifyCombine that the two agree.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: Results are printed.
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException never in practice; declared by measure.
+ *-------------------------------------------------------------------*/
+    private static void benchCombine() throws IOException {
+        verifyCombine();
+        Random random = new Random(345);
+        byte[] values = new byte[OPS_PER_ROUND];
+        byte[] key = new byte[OPS_PER_ROUND];
+        for (int i = 0; i < OPS_PER_ROUND; i++) {
+            values[i] = (byte) (random.nextInt(26) + 1);
+            key[i] = (byte) (random.nextInt(26) + 1);
+        }
+
+        Combiner[] combiners = { new ScalarCombiner(), Combiner.INSTANCE };
+        for (Combiner combiner : combiners) {
+            String name = combiner.getClass().getName();
+            // Encrypting then decrypting leaves values as they were. Chunks
+            // as in Encrypt, and extra warm-up, so the vector code is fully
+            // compiled before it is measured
+            measure(name + " encrypt+decrypt", "values", OPS_PER_ROUND,
+                    WARMUP_ROUNDS * 10, MEASURE_ROUNDS, () -> {
+                for (int i = 0; i < OPS_PER_ROUND; i += MessageStream.CHUNK_SIZE) {
+                    int len = Math.min(MessageStream.CHUNK_SIZE, OPS_PER_ROUND - i);
+                    combiner.encrypt(values, i, key, i, len);
+                    combiner.decrypt(values, i, key, i, len);
+                }
+                return values[OPS_PER_ROUND - 1];
+            });
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Method VERIFY_COMBINE
+ |
+ |  Purpose:  Encrypt and decrypt the same buffers with ScalarCombiner
+ |            and Combiner.INSTANCE and compare the results. The buffers
+ |            start with every pair of value and key (so every sum on
+ |            both sides of the 26/27 and 0/1 wrap), then random values,
+ |            and are combined at lengths and offsets that are not
+ |            multiples of any vector length, with the key at a
+ |            different offset, so the vector loop, its tail and the
+ |            handoff between them are all covered.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: A line is printed if the combiners agree; if they
+ |                  ever differ an IllegalStateException is thrown.
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    static void verifyCombine() {
+        int[] lengths = {0, 1, 15, 31, 33, 63, 65, 676, 1000, 4099, 8191};
+        int[] offsets = {0, 1, 5, 31};
+        Random random = new Random(16);
+        byte[] values = new byte[8192 + 64];
+        byte[] key = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (byte) (i < 676 ? i / 26 + 1 : random.nextInt(26) + 1);
+            key[i] = (byte) (i < 676 ? i % 26 + 1 : random.nextInt(26) + 1);
+        }
+
+        Combiner scalar = new ScalarCombiner();
+        Combiner candidate = Combiner.INSTANCE;
+        String name = candidate.getClass().getName();
+        for (int len : lengths) {
+            for (int off : offsets) {
+                int keyOff = (off * 7 + 3) % 32;
+                for (boolean encrypt : new boolean[] {true, false}) {
+                    byte[] expected = values.clone();
+                    byte[] actual = values.clone();
+                    if (encrypt) {
+                        scalar.encrypt(expected, off, key, keyOff, len);
+                        candidate.encrypt(actual, off, key, keyOff, len);
+                    } else {
+                        scalar.decrypt(expected, off, key, keyOff, len);
+                        candidate.decrypt(actual, off, key, keyOff, len);
+                    }
+                    if (!Arrays.equals(expected, actual)) {
+                        throw new IllegalStateException(name + (encrypt ? " encrypt" : " decrypt")
+                                + " differs from ScalarCombiner at length " + len + ", offset " + off);
+                    }
+                }
+            }
+        }
+        System.out.printf("%s matches ScalarCombiner over %d lengths and %d offsets%n",
+                name, lengths.length, offsets.length);
+    }
+
+/*---------------------------------------------------------------------
+ |  Method BENCH_DECK_FILES
+ |
+ |  Purpose:  Time reading the deck: parsing the text file's bytes,
+ |            parsing the same deck in binary form, and DeckFile.load,
+ |            which only checks the file's attributes once the deck is
+ |            cached.
+ |
+ |  Pre-condition: dir is a writable directory.
+ |
+ |  Post-condition: A binary copy of the deck is left in dir; results
+ |                  are printed.
+ |
+ |  Parameters:
+ |      deckPath -- the deck file
+ |      dir      -- where to write the binary deck
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if a deck file cannot be read or written.
+ *-------------------------------------------------------------------*/
+    private static void benchDeckFiles(String deckPath, Path dir) throws IOException {
+        int parses = OPS_PER_ROUND / 10;
+        byte[] text = Files.readAllBytes(Path.of(deckPath));
+        byte[] binary = DeckFile.toBinary(DeckFile.load(deckPath));
+        Path binaryPath = dir.resolve("deck.bin");
+        Files.write(binaryPath, binary);
+
+        measure("DeckFile.read text", "decks", parses, WARMUP_ROUNDS, MEASURE_ROUNDS, () -> {
+            long sum = 0;
+            for (int i = 0; i < parses; i++) {
+                sum += DeckFile.read(text).cardAt(i % 28);
+            }
+            return sum;
+        });
+        measure("DeckFile.read binary", "decks", parses, WARMUP_ROUNDS, MEASURE_ROUNDS, () -> {
+            long sum = 0;
+            for (int i = 0; i < parses; i++) {
+                sum += DeckFile.read(binary).cardAt(i % 28);
+            }
+            return sum;
+        });
+        measure("DeckFile.load cached", "decks", parses / 10, WARMUP_ROUNDS, MEASURE_ROUNDS, () -> {
+            long sum = 0;
+            for (int i = 0; i < parses / 10; i++) {
+                sum += DeckFile.load(deckPath).cardAt(i % 28);
+            }
+            return sum;
+        });
+    }
+
+/*---------------------------------------------------------------------
+ |  Method BENCH_FILES
+ |
+ |  Purpose:  Generate a plaintext file of the given size and time
+ |            reading it into a Message (Scanner and memory-mapped),
+ |            cleaning it with MessageStream, and encrypting and
+ |            decrypting it file to file the way the -stream modes of
+ |            Encrypt and Decrypt do. Before timing, one round trip is
+ |            checked: the decrypted file must equal the cleaned
+ |            plaintext. Files under MIN_BYTES_PER_ROUND are processed
+ |            several times per round so a round is long enough to
+ |            time.
+ |
+ |  Pre-condition: dir is a writable directory.
+ |
+ |  Post-condition: The generated files are left in dir; results are
+ |                  printed.
+ |
+ |  Parameters:
+ |      deckPath -- the deck file
+ |      dir      -- where to write the files
+ |      size     -- plaintext size in bytes
+ |      inMemory -- false to skip the Message benchmarks, which need
+ |                  the whole file in memory
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if a file cannot be read or written, and
+ |            IllegalStateException if the round trip fails.
+ *-------------------------------------------------------------------*/
+    private static void benchFiles(String deckPath, Path dir, long size, boolean inMemory)
+            throws IOException {
+        String label = size >= 1 << 30 ? (size >> 30) + "GB"
+                     : size >= 1 << 20 ? (size >> 20) + "MB" : (size >> 10) + "KB";
+        Path plain = writeCorpus(dir, size);
+        Path cleaned = dir.resolve("cleaned-" + label + ".txt");
+        Path encrypted = dir.resolve("encrypted-" + label + ".txt");
+        Path decrypted = dir.resolve("decrypted-" + label + ".txt");
+
+        runFile(deckPath, plain, cleaned, CLEAN);
+        runFile(deckPath, plain, encrypted, ENCRYPT);
+        runFile(deckPath, encrypted, decrypted, DECRYPT);
+        if (Files.mismatch(cleaned, decrypted) != -1) {
+            throw new IllegalStateException("Decrypting the " + label + " corpus did not give back the plaintext");
+        }
+
+        int repeat = (int) Math.max(1, MIN_BYTES_PER_ROUND / size);
+        int warmup = size >= LARGE_CORPUS_SIZE ? 0 : WARMUP_ROUNDS;
+        int rounds = size >= LARGE_CORPUS_SIZE ? 1 : MEASURE_ROUNDS;
+        long units = size * repeat;
+
+        if (inMemory) {
+            measure("Message.setMessage " + label, "bytes", units, warmup, rounds, () -> {
+                long sum = 0;
+                for (int i = 0; i < repeat; i++) {
+                    Message message = new Message();
+                    message.setMessage(plain.toString());
+                    sum += message.getNumbers().size();
+                }
+                return sum;
+            });
+            measure("Message.setMessageMapped " + label, "bytes", units, warmup, rounds, () -> {
+                long sum = 0;
+                for (int i = 0; i < repeat; i++) {
+                    Message message = new Message();
+                    message.setMessageMapped(plain.toString());
+                    sum += message.getNumbers().size();
+                }
+                return sum;
+            });
+        }
+        measure("MessageStream.read " + label, "bytes", units, warmup, rounds, () -> {
+            long sum = 0;
+            for (int i = 0; i < repeat; i++) {
+                sum += runFile(deckPath, plain, cleaned, CLEAN);
+            }
+            return sum;
+        });
+        measure("Encrypt " + label, "bytes", units, warmup, rounds, () -> {
+            long sum = 0;
+            for (int i = 0; i < repeat; i++) {
+                sum += runFile(deckPath, plain, encrypted, ENCRYPT);
+            }
+            return sum;
+        });
+        measure("Decrypt " + label, "bytes", units, warmup, rounds, () -> {
+            long sum = 0;
+            for (int i = 0; i < repeat; i++) {
+                sum += runFile(deckPath, encrypted, decrypted, DECRYPT);
+            }
+            return sum;
+        });
+    }
+
+/*---------------------------------------------------------------------
+ |  Method WRITE_CORPUS
+ |
+ |  Purpose:  Write a plaintext file of exactly size bytes: lines of up
+ |            to LINE_LENGTH characters of mixed-case words, digits and
+ |            punctuation, so cleaning has something to remove. The
+ |            text comes from a fixed seed, so every run measures the
+ |            same input.
+ |
+ |  Pre-condition: dir is a writable directory and size > 0.
+ |
+ |  Post-condition: The file exists in dir.
+ |
+ |  Parameters:
+ |      dir  -- where to write the file
+ |      size -- length of the file in bytes
+ |
+ |  Returns:  The path of the new file.
+ |
+ |  Throws:   IOException if the file cannot be written.
+ *-------------------------------------------------------------------*/
+    static Path writeCorpus(Path dir, long size) throws IOException {
+        Path file = dir.resolve("plain-" + size + ".txt");
+        Random random = new Random(size);
+        char[] line = new char[LINE_LENGTH + 1];
+        String punctuation = " .,;:!?'-0123456789";
+
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            long written = 0;
+            while (written < size) {
+                int length = (int) Math.min(1 + random.nextInt(LINE_LENGTH), size - written);
+                for (int i = 0; i < length - 1; i++) {
+                    int pick = random.nextInt(64);
+                    if (pick < 26) {
+                        line[i] = (char) ('a' + pick);
+                    } else if (pick < 52) {
+                        line[i] = (char) ('A' + pick - 26);
+                    } else {
+                        line[i] = punctuation.charAt(random.nextInt(punctuation.length()));
+                    }
+                }
+                line[length - 1] = '\n';
+                out.write(line, 0, length);
+                written += length;
+            }
+        }
+        return file;
+    }
+
+/*---------------------------------------------------------------------
+ |  Method RUN_FILE
+ |
+ |  Purpose:  Stream input through MessageStream to output with a fresh
+ |            keystream from the deck file. CLEAN writes the cleaned
+ |            letters unchanged, ENCRYPT and DECRYPT combine them with
+ |            the keystream exactly as Encrypt and Decrypt do. No
+ |            messages are printed, so the console does not end up in
+ |            the timings.
+ |
+ |  Pre-condition: deckPath names a valid deck file and input contains
+ |                 letters.
+ |
+ |  Post-condition: output holds one line per kept input line.
+ |
+ |  Parameters:
+ |      deckPath -- the deck file
+ |      input    -- the file to read
+ |      output   -- the file to write
+ |      mode     -- CLEAN, ENCRYPT or DECRYPT
+ |
+ |  Returns:  The number of keystream values used.
+ |
+ |  Throws:   IOException if a file cannot be read or written.
+ *-------------------------------------------------------------------*/
+    static long runFile(String deckPath, Path input, Path output, int mode) throws IOException {
+        KeystreamGenerator keystream = new KeystreamGenerator(SolitaireDeck.select(newDeck(deckPath)));
+        byte[] keyChunk = new byte[MessageStream.CHUNK_SIZE];
+
+        try (LetterWriter writer = LetterWriter.toFile(output.toString())) {
+            MessageStream.read(input.toString(), new LineHandler() {
+                public void letters(byte[] values, int len) throws IOException {
+                    if (mode == ENCRYPT) {
+                        keystream.fill(keyChunk, 0, len);
+                        Encrypt.encryptChunk(values, keyChunk, len);
+                    } else if (mode == DECRYPT) {
+                        keystream.fill(keyChunk, 0, len);
+                        Decrypt.decryptChunk(values, keyChunk, len);
+                    }
+                    writer.write(values, 0, len);
+                }
+
+                public void endOfLine() throws IOException {
+                    writer.newLine();
+                }
+            });
+        }
+        return keystream.position();
+    }
+
+/*---------------------------------------------------------------------
+ |  Method MEASURE
+ |
+ |  Purpose:  Run warmup rounds of body so the JIT compiles it, then time
+ |            each measured round and print the best and average number
+ |            of units per second. Over the measured rounds it also
+ |            records the bytes this thread allocated, reported per
+ |            unit, and the number and total time of garbage
+ |            collections.
+ |
+ |  Pre-condition: body processes units units per call.
+ |
+ |  Post-condition: Results are printed.
+ |
+ |  Parameters:
+ |      name   -- the benchmark, for the report
+ |      unit   -- what a unit is (ops, values, bytes)
+ |      units  -- units processed per round
+ |      warmup -- number of untimed rounds
+ |      rounds -- number of timed rounds, at least 1
+ |      body   -- one round of work
+ |
+ |  Returns:  None (void)
+ |
+ |  Throws:   IOException if body throws it.
+ *-------------------------------------------------------------------*/
+    static void measure(String name, String unit, long units, int warmup, int rounds,
+                        Workload body) throws IOException {
+        long checksum = 0;
+        for (int round = 0; round < warmup; round++) {
+            checksum += body.run();
+        }
+
+        long gcCount = gcCount();
+        long gcTime = gcTime();
+        long allocated = THREADS.getCurrentThreadAllocatedBytes();
+        double best = 0;
+        double total = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            checksum += body.run();
+            long elapsed = System.nanoTime() - start;
+            double perSecond = units * 1e9 / elapsed;
+            best = Math.max(best, perSecond);
+            total += perSecond;
+        }
+        allocated = THREADS.getCurrentThreadAllocatedBytes() - allocated;
+
+        String allocation = allocated < 0 ? "n/a"
+                : String.format("%.3f B/%s", (double) allocated / ((double) units * rounds),
+                                unit.substring(0, unit.length() - 1));
+        System.out.printf("%-34s %s/second: best %,15.0f, average %,15.0f | alloc %s, gc %d (%d ms) (checksum %d)%n",
+                name, unit, best, total / rounds, allocation,
+                gcCount() - gcCount, gcTime() - gcTime, checksum);
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+}
@@ -0,0 +1,298 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class SolitaireClient
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Thin command-line client for SolitaireServer, meant
+ ||                   as a drop-in for Encrypt and Decrypt in scripts
+ ||                   that run many jobs. It checks the message file,
+ ||                   sends the deck file's path and the message to the
+ ||                   server, and prints and writes exactly what Encrypt
+ ||                   or Decrypt would have: the same headings, the same
+ ||                   encryptedMessage.txt, the same error messages. If
+ ||                   no server is listening, it warns on standard error
+ ||                   and runs the job in-process instead.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  None
+ ||
+ ||  Class Methods:  void main(String[] args)
+ ||                        – Runs one job or prints the server's
+ ||                          statistics.
+ ||
+ ||  Inst. Methods:  None
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+class SolitaireClient {
+
+/*---------------------------------------------------------------------
+ |  Method MAIN
+ |
+ |  Purpose:  Parse the command line, which is that of Encrypt or
+ |            Decrypt (default mode only) preceded by the server's
+ |            address and the job's name:
+ |
+ |              [-socket <path> | -port <n>] encrypt [-quiet] <deck> <message>
+ |              [-socket <path> | -port <n>] decrypt [-out <file>] <deck> <message>
+ |              [-socket <path> | -port <n>] stats
+ |
+ |            and run the job on the server, which is reached through
+ |            SolitaireServer.DEFAULT_SOCKET unless -socket or -port
+ |            names another address. A missing or empty message
+ |            file is left to Encrypt or Decrypt to report, locally, and
+ |            a file longer than SolitaireServer.MAX_MESSAGE_LENGTH is
+ |            encrypted or decrypted locally.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: The output has been printed and written.
+ |
+ |  Parameters:
+ |      args -- the command line, as above
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    public static void main(String[] args) {
+        String socketPath = SolitaireServer.DEFAULT_SOCKET;
+        int port = 0;
+        int i = 0;
+        if (args.length > 1 && args[0].equals("-socket")) {
+            socketPath = args[1];
+            i = 2;
+        } else if (args.length > 1 && args[0].equals("-port")) {
+            socketPath = null;
+            port = SolitaireServer.parsePort(args[1]);
+            i = 2;
+        }
+        String job = i < args.length && port >= 0 ? args[i++] : "";
+
+        boolean echo = true;
+        String outputPath = null;
+        boolean usage = false;
+        List<String> files = new ArrayList<>();
+        for (; i < args.length && !usage; i++) {
+            if (job.equals("encrypt") && args[i].equals("-quiet")) {
+                echo = false;
+            } else if (job.equals("decrypt") && args[i].equals("-out") && i + 1 < args.length) {
+                outputPath = args[++i];
+            } else {
+                files.add(args[i]);
+            }
+        }
+        usage = job.equals("stats") ? !files.isEmpty()
+                                    : !(job.equals("encrypt") || job.equals("decrypt")) || files.size() != 2;
+        if (usage) {
+            System.out.println("Usage: java SolitaireClient [-socket <path> | -port <n>] "
+                    + "encrypt [-quiet] <deckFile> <messageFile> | decrypt [-out <file>] <deckFile> <encryptedMessageFile> | stats");
+            return;
+        }
+
+        SocketAddress address = SolitaireServer.address(socketPath, port);
+        if (job.equals("stats")) {
+            stats(address, socketPath != null);
+            return;
+        }
+
+        String deckPath = files.get(0);
+        String messagePath = files.get(1);
+        boolean encrypt = job.equals("encrypt");
+        File messageFile = new File(messagePath);
+        byte[] message = null;
+        try {
+            if (messageFile.length() > 0 && messageFile.length() <= SolitaireServer.MAX_MESSAGE_LENGTH) {
+                message = Files.readAllBytes(messageFile.toPath());
+            }
+        } catch (IOException e) {
+            // Reported below
+        }
+        if (message == null) {
+            // Let Encrypt or Decrypt report it exactly as it always has,
+            // or encrypt a file too large for the server
+            localRun(encrypt, echo, outputPath, deckPath, messagePath);
+            return;
+        }
+
+        byte[] reply;
+        byte status;
+        try (SocketChannel server = connect(address, socketPath != null)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(server)));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(server)));
+            out.writeByte(encrypt ? SolitaireServer.OP_ENCRYPT : SolitaireServer.OP_DECRYPT);
+            SolitaireServer.writeFrame(out, new File(deckPath).getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+            SolitaireServer.writeFrame(out, message);
+            out.flush();
+            status = in.readByte();
+            reply = SolitaireServer.readFrame(in, Integer.MAX_VALUE);
+        } catch (IOException e) {
+            System.err.println("Warning: no Solitaire server at " + address + " (" + e.getMessage()
+                    + "), running locally");
+            localRun(encrypt, echo, outputPath, deckPath, messagePath);
+            return;
+        }
+
+        if (status == SolitaireServer.ERROR) {
+            System.out.println(new String(reply, StandardCharsets.UTF_8));
+            return;
+        }
+        if (status == SolitaireServer.NO_LETTERS) {
+            System.out.println("Error: message file does not contain any letters: "
+                    + messageFile.getName());
+        }
+        if (encrypt) {
+            writeEncrypted(reply, echo);
+        } else {
+            writeDecrypted(reply, outputPath);
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods WRITE_ENCRYPTED and WRITE_DECRYPTED
+ |
+ |  Purpose:  Put the server's output where Encrypt or Decrypt would:
+ |            WRITE_ENCRYPTED -- into encryptedMessage.txt, and under
+ |                               the heading on the console unless
+ |                               -quiet was given.
+ |            WRITE_DECRYPTED -- into the -out file, or under the
+ |                               heading on the console.
+ |
+ |  Pre-condition: text is the output returned by the server.
+ |
+ |  Post-condition: The output and completion message are written.
+ |
+ |  Parameters:
+ |      text       -- the output
+ |      echo       -- true to also print the encrypted messages
+ |      outputPath -- the -out file, or null
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    private static void writeEncrypted(byte[] text, boolean echo) {
+        PrintStream console = System.out;
+        if (echo) {
+            console.println("Encrypted Messages:");
+            console.println("===================");
+            console.write(text, 0, text.length);
+        }
+        try {
+            Files.write(Path.of(Encrypt.OUTPUT_FILE), text, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (IOException | UncheckedIOException e) {
+            console.println("Error writing to file");
+            return;
+        }
+        console.println("Encrypted message written to " + Encrypt.OUTPUT_FILE);
+    }
+
+    private static void writeDecrypted(byte[] text, String outputPath) {
+        PrintStream console = System.out;
+        if (outputPath == null) {
+            console.println("Decrypted Messages:");
+            console.println("===================");
+            console.write(text, 0, text.length);
+            console.flush();
+            return;
+        }
+        try {
+            Files.write(Path.of(outputPath), text);
+        } catch (IOException | UncheckedIOException e) {
+            console.println("Error decrypting file: " + outputPath);
+            return;
+        }
+        console.println("Decrypted message written to " + outputPath);
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods CONNECT, STATS and LOCAL_RUN
+ |
+ |  Purpose:  CONNECT   -- open a connection to the server.
+ |            STATS     -- print the server's statistics report.
+ |            LOCAL_RUN -- run the job with Encrypt or Decrypt in this
+ |                         process, for when the server cannot be used.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: The report or the job's output has been printed.
+ |
+ |  Parameters:
+ |      address  -- the server's address
+ |      unix     -- true if address is a Unix domain socket
+ |      the rest -- the job, as parsed by MAIN
+ |
+ |  Returns:  CONNECT: the connection; the others: None (void)
+ |
+ |  Throws:   CONNECT: IOException if no server is listening.
+ *-------------------------------------------------------------------*/
+    private static SocketChannel connect(SocketAddress address, boolean unix) throws IOException {
+        SocketChannel server = unix ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                                    : SocketChannel.open();
+        try {
+            server.connect(address);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        return server;
+    }
+
+    private static void stats(SocketAddress address, boolean unix) {
+        try (SocketChannel server = connect(address, unix)) {
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(server));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(server)));
+            out.writeByte(SolitaireServer.OP_STATS);
+            out.flush();
+            in.readByte();
+            System.out.print(new String(SolitaireServer.readFrame(in, Integer.MAX_VALUE),
+                    StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.out.println("Error: no Solitaire server at " + address);
+        }
+    }
+
+    private static void localRun(boolean encrypt, boolean echo, String outputPath,
+                                 String deckPath, String messagePath) {
+        List<String> args = new ArrayList<>();
+        if (encrypt && !echo) {
+            args.add("-quiet");
+        }
+        if (!encrypt && outputPath != null) {
+            args.add("-out");
+            args.add(outputPath);
+        }
+        args.add(deckPath);
+        args.add(messagePath);
+        if (encrypt) {
+            Encrypt.main(args.toArray(new String[0]));
+        } else {
+            Decrypt.main(args.toArray(new String[0]));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Interface SolitaireDeck
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  The contract a deck representation has to meet for
+ ||                   Keystream to run the Solitaire algorithm on it: the
+ ||                   four deck manipulations and a way to read the card
+ ||                   at a position. Deck (a plain array), RotatingDeck
+ ||                   (a circular buffer) and PackedDeck (three longs)
+ ||                   all implement it and produce the same card order
+ ||                   after every operation.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  DECK_PROPERTY – name of the system property used
+ ||                                  by select() ("solitaire.deck").
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||  Class Methods:  SolitaireDeck select(Deck deck)
+ ||                        – Returns the representation chosen by the
+ ||                          solitaire.deck property, starting from the
+ ||                          cards in deck.
+ ||
+ ||  Inst. Methods:  void moveJoker27()
+ ||                   void moveJoker28()
+ ||                   void tripleCut()
+ ||                   void countCut()
+ ||                        – The Solitaire deck manipulations, with the
+ ||                          same meaning as in Deck.
+ ||
+ ||                   int cardAt(int position)
+ ||                        – Returns the card at a position (0 = top).
+ ||
+ ||                   int nextValue()
+ ||                        – Advances the deck to the next keystream
+ ||                          value and returns it.
+ ||
+ ||                   void skip(long count)
+ ||                        – Advances the deck past count keystream
+ ||                          values without returning them.
+ ||
+ ++-----------------------------------------------------------------------*/
+
+interface SolitaireDeck {
+    String DECK_PROPERTY = "solitaire.deck";
+
+    void moveJoker27();
+
+    void moveJoker28();
+
+    void tripleCut();
+
+    void countCut();
+
+    int cardAt(int position);
+
+/*---------------------------------------------------------------------
+ |  Method NEXT_VALUE
+ |
+ |  Purpose:  Run the Solitaire steps (joker moves, triple cut, count
+ |            cut) and read the output card, repeating the steps until
+ |            the output card is not a joker. Representations may
+ |            override this with a faster equivalent.
+ |
+ |  Pre-condition: The deck is a valid 28-card deck.
+ |
+ |  Post-condition: The deck has been advanced past the returned value.
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  The next keystream value, 1–26.
+ *-------------------------------------------------------------------*/
+    default int nextValue() {
+        while (true) {
+            moveJoker27();
+            moveJoker28();
+            tripleCut();
+            countCut();
+
+            int topCardValue = cardAt(0);
+            int count;
+            if (topCardValue >= 27) {
+                count = 27;
+            } else {
+                count = topCardValue;
+            }
+            int next = cardAt(count);
+
+            if (next != 27 && next != 28) {
+                return next;
+            }
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Method SKIP
+ |
+ |  Purpose:  Advance the deck past count keystream values, exactly as
+ |            count calls to nextValue() would, including the steps
+ |            whose output card is a joker and so produce no value.
+ |            Nothing is stored. Representations may override this
+ |            with a tighter loop.
+ |
+ |  Pre-condition: The deck is a valid 28-card deck.
+ |
+ |  Post-condition: The deck is in the state count calls to nextValue()
+ |                  would have left it in.
+ |
+ |  Parameters:
+ |      count -- number of keystream values to skip, 0 or more
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    default void skip(long count) {
+        for (long i = 0; i < count; i++) {
+            nextValue();
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Method SELECT
+ |
+ |  Purpose:  Choose the deck representation used by Encrypt and
+ |            Decrypt. The solitaire.deck system property may be set
+ |            to "array" (the default, the Deck itself), "rotating"
+ |            (a RotatingDeck holding the same cards) or "packed" (a
+ |            PackedDeck holding the same cards).
+ |
+ |  Pre-condition: deck has been populated from a valid deck file.
+ |
+ |  Post-condition: deck is unchanged. Operations on the returned
+ |                  object do not affect deck unless it is deck itself.
+ |
+ |  Parameters:
+ |      deck -- the deck read from the deck file
+ |
+ |  Returns:  The SolitaireDeck to generate the keystream with.
+ *-------------------------------------------------------------------*/
+    static SolitaireDeck select(Deck deck) {
+        String kind = System.getProperty(DECK_PROPERTY, "array");
+        switch (kind) {
+            case "array": return deck;
+            case "rotating": return new RotatingDeck(deck.getDeck());
+            case "packed": return new PackedDeck(deck.getDeck());
+            default:
+                throw new IllegalArgumentException("Unknown deck representation: " + kind);
+        }
+    }
+}
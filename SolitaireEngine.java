@@ -0,0 +1,195 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class SolitaireEngine
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  In-process encrypt and decrypt for programs that embed
+ ||                   the cipher, e.g. a service handling many requests at
+ ||                   once. An engine holds nothing but the immutable
+ ||                   starting DeckState, so one engine can be shared by
+ ||                   any number of threads (virtual or not) with no
+ ||                   locking: every call forks its own KeystreamGenerator
+ ||                   from the starting state and keeps its cleaning,
+ ||                   keystream and output buffers on its own stack. The
+ ||                   deck file is read once, when the engine is made.
+ ||
+ ||                   The output of a call is exactly the text Encrypt
+ ||                   writes to encryptedMessage.txt (or Decrypt writes to
+ ||                   its -out file) for the same message: one line of
+ ||                   capital letters per kept message line, each ended
+ ||                   by the platform line separator. A message with no
+ ||                   letters gives an empty result.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  SolitaireEngine(DeckState start)
+ ||                        – An engine whose messages start from start.
+ ||
+ ||  Class Methods:  SolitaireEngine load(String deckFilePath)
+ ||                        – An engine for a deck file.
+ ||
+ ||                   byte[] process(boolean encrypt, KeystreamGenerator keystream,
+ ||                                  byte[] message, int length)
+ ||                        – Runs one message with a given keystream.
+ ||
+ ||  Inst. Methods:  DeckState start()
+ ||
+ ||                   byte[] encrypt(byte[] message), byte[] decrypt(byte[] message)
+ ||                   ByteBuffer encrypt(ByteBuffer message),
+ ||                   ByteBuffer decrypt(ByteBuffer message)
+ ||                        – Encrypt or decrypt one message.
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+final class SolitaireEngine {
+    private final DeckState start;
+
+/*---------------------------------------------------------------------
+ |  Constructor SolitaireEngine and Method LOAD
+ |
+ |  Purpose:  Create an engine for a starting deck, given as a snapshot
+ |            or (LOAD) as a deck file, which is read here and never
+ |            again.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: The engine is ready for use from any thread.
+ |
+ |  Parameters:
+ |      start        -- the starting deck
+ |      deckFilePath -- the path to the deck file
+ |
+ |  Returns:  LOAD: the engine.
+ |
+ |  Throws:   LOAD: IOException if the deck file cannot be used (see
+ |            DeckState.load).
+ *-------------------------------------------------------------------*/
+    SolitaireEngine(DeckState start) {
+        if (start == null) {
+            throw new NullPointerException("start");
+        }
+        this.start = start;
+    }
+
+    static SolitaireEngine load(String deckFilePath) throws IOException {
+        return new SolitaireEngine(DeckState.load(deckFilePath));
+    }
+
+    DeckState start() {
+        return start;
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods ENCRYPT and DECRYPT
+ |
+ |  Purpose:  Encrypt or decrypt one whole message, cleaned as Encrypt
+ |            and Decrypt clean a message file, with a keystream that
+ |            starts from the engine's starting deck. The array forms
+ |            take the raw bytes of the message (UTF-8, as in a message
+ |            file); the ByteBuffer forms take the bytes between the
+ |            buffer's position and limit and move its position to the
+ |            limit.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: The engine and message array are unchanged.
+ |
+ |  Parameters:
+ |      message -- the raw message
+ |
+ |  Returns:  The output text as ASCII bytes, empty if the message has
+ |            no letters; the ByteBuffer forms return it wrapped.
+ *-------------------------------------------------------------------*/
+    byte[] encrypt(byte[] message) {
+        return process(true, start.generator(), message, message.length);
+    }
+
+    byte[] decrypt(byte[] message) {
+        return process(false, start.generator(), message, message.length);
+    }
+
+    ByteBuffer encrypt(ByteBuffer message) {
+        return ByteBuffer.wrap(encrypt(remaining(message)));
+    }
+
+    ByteBuffer decrypt(ByteBuffer message) {
+        return ByteBuffer.wrap(decrypt(remaining(message)));
+    }
+
+    // The bytes between position and limit, without a copy if they are a whole array
+    private static byte[] remaining(ByteBuffer message) {
+        if (message.hasArray() && message.arrayOffset() == 0 && message.position() == 0
+                && message.limit() == message.array().length) {
+            message.position(message.limit());
+            return message.array();
+        }
+        byte[] bytes = new byte[message.remaining()];
+        message.get(bytes);
+        return bytes;
+    }
+
+/*---------------------------------------------------------------------
+ |  Method PROCESS
+ |
+ |  Purpose:  Clean message[0 .. length - 1] with MessageStream and
+ |            encrypt or decrypt it chunk by chunk with keystream, using
+ |            the same combine and LetterWriter code as Encrypt -stream,
+ |            into a new array. Everything it touches other than
+ |            keystream is local to the call. Also used by
+ |            SolitaireServer, which may give it a cached keystream.
+ |
+ |  Pre-condition: keystream is not used by any other thread during the
+ |                 call.
+ |
+ |  Post-condition: keystream has moved past one value per letter.
+ |
+ |  Parameters:
+ |      encrypt   -- true to encrypt, false to decrypt
+ |      keystream -- source of the keystream
+ |      message   -- the raw message
+ |      length    -- number of bytes of message to use
+ |
+ |  Returns:  The output text, empty if the message has no letters.
+ |
+ |  Throws:   UncheckedIOException if a cached keystream cannot be read.
+ *-------------------------------------------------------------------*/
+    static byte[] process(boolean encrypt, KeystreamGenerator keystream, byte[] message, int length) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(length + 64);
+        byte[] keyChunk = new byte[MessageStream.CHUNK_SIZE];
+        try (LetterWriter writer = new LetterWriter(Channels.newChannel(output), true)) {
+            MessageStream.read(message, length, new LineHandler() {
+                public void letters(byte[] values, int len) throws IOException {
+                    keystream.fill(keyChunk, 0, len);
+                    if (encrypt) {
+                        Encrypt.encryptChunk(values, keyChunk, len);
+                    } else {
+                        Decrypt.decryptChunk(values, keyChunk, len);
+                    }
+                    writer.write(values, 0, len);
+                }
+
+                public void endOfLine() throws IOException {
+                    writer.newLine();
+                }
+            });
+        } catch (IOException e) {
+            // Only the keystream cache can fail; the output is in memory
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,432 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class SolitaireServer
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Long-running encryption service, so that a scheduler
+ ||                   running thousands of jobs does not pay for JVM
+ ||                   start-up, JIT warm-up and deck parsing every time.
+ ||                   It listens on a Unix domain socket (DEFAULT_SOCKET
+ ||                   unless -socket names another) or, only if asked
+ ||                   with -port, a loopback TCP port, keeps every deck
+ ||                   file it has
+ ||                   read in the DeckFile cache (reread when it changes),
+ ||                   warms up the encryption code before accepting jobs,
+ ||                   and answers encrypt and decrypt requests with the
+ ||                   exact text Encrypt writes to encryptedMessage.txt
+ ||                   or Decrypt prints. SolitaireClient is the matching
+ ||                   command-line client.
+ ||
+ ||                   Protocol (big-endian, any number of requests per
+ ||                   connection):
+ ||                     request  op byte ('E' encrypt, 'D' decrypt,
+ ||                              'S' statistics); for 'E' and 'D' the
+ ||                              deck file path and then the message,
+ ||                              each as an int length and that many
+ ||                              bytes (path in UTF-8, message as read
+ ||                              from the file)
+ ||                     reply    status byte (OK, NO_LETTERS or ERROR),
+ ||                              int length, then the output text, the
+ ||                              error message or the statistics report
+ ||
+ ||                   Each connection is served by its own thread; the
+ ||                   counters behind the 'S' report (requests, failures,
+ ||                   bytes, latency) are shared and lock-free.
+ ||
+ ||                   The server opens whatever deck path a client sends,
+ ||                   with its own user's rights, and its errors show
+ ||                   whether a path exists. The socket is therefore made
+ ||                   readable and writable by its owner only, in a
+ ||                   directory only the owner can enter when the server
+ ||                   creates it. A TCP port has no such protection: any
+ ||                   local user can connect to it and encrypt or
+ ||                   decrypt with every deck file the server can read,
+ ||                   so -port is for single-user machines only.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  DEFAULT_SOCKET, OP_ENCRYPT, OP_DECRYPT, OP_STATS,
+ ||                   OK, NO_LETTERS, ERROR, MAX_PATH_LENGTH,
+ ||                   MAX_MESSAGE_LENGTH, WARM_UP_LETTERS
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  None
+ ||
+ ||  Class Methods:  void main(String[] args)
+ ||                        – Starts the server.
+ ||
+ ||                   SocketAddress address(String socketPath, int port)
+ ||                        – The address to listen on or connect to.
+ ||
+ ||                   byte[] readFrame(DataInputStream in, int limit)
+ ||                   void writeFrame(DataOutputStream out, byte[] data)
+ ||                        – Length-prefixed fields of the protocol.
+ ||
+ ||  Inst. Methods:  None
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+class SolitaireServer {
+    static final String DEFAULT_SOCKET =
+            Path.of(System.getProperty("user.home"), ".solitaire", "server.sock").toString();
+    static final byte OP_ENCRYPT = 'E';
+    static final byte OP_DECRYPT = 'D';
+    static final byte OP_STATS = 'S';
+    static final byte OK = 0;
+    static final byte NO_LETTERS = 1;    // OK, but the message had no letters
+    static final byte ERROR = 2;
+    static final int MAX_PATH_LENGTH = 4096;
+    static final int MAX_MESSAGE_LENGTH = 1 << 28;  // Larger files are encrypted locally
+    static final int WARM_UP_LETTERS = 1 << 20;
+
+    private static final Stats STATS = new Stats();
+    private static final boolean POSIX =
+            FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+/*---------------------------------------------------------------------
+ |  Method MAIN
+ |
+ |  Purpose:  Warm up, bind to the Unix socket given by -socket <path>
+ |            (default DEFAULT_SOCKET) or to loopback TCP port <n> with
+ |            -port <n>, and serve connections until the process is
+ |            stopped. A missing socket directory is created for the
+ |            owner only, a stale socket file from an earlier run is
+ |            removed first, the new socket file is restricted to its
+ |            owner, and it is removed on exit.
+ |            The deck representation and keystream cache can be chosen
+ |            with -Dsolitaire.deck and -Dsolitaire.cache, as for
+ |            Encrypt and Decrypt.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: Runs until killed.
+ |
+ |  Parameters:
+ |      args -- optional -socket <path> or -port <n>
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    public static void main(String[] args) {
+        String socketPath = DEFAULT_SOCKET;
+        int port = 0;
+        boolean usage = false;
+        for (int i = 0; i < args.length && !usage; i++) {
+            if (args[i].equals("-socket") && i + 1 < args.length) {
+                socketPath = args[++i];
+            } else if (args[i].equals("-port") && i + 1 < args.length) {
+                socketPath = null;
+                port = parsePort(args[++i]);
+                usage = port < 0;
+            } else {
+                usage = true;
+            }
+        }
+        if (usage) {
+            System.out.println("Usage: java SolitaireServer [-socket <path> | -port <n>]");
+            return;
+        }
+
+        warmUp();
+
+        SocketAddress address = address(socketPath, port);
+        try (ServerSocketChannel server = socketPath != null
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open()) {
+            Path socketFile = socketPath != null ? Path.of(socketPath).toAbsolutePath() : null;
+            if (socketFile != null) {
+                if (!Files.exists(socketFile.getParent())) {
+                    if (POSIX) {
+                        Files.createDirectories(socketFile.getParent(), PosixFilePermissions.asFileAttribute(
+                                PosixFilePermissions.fromString("rwx------")));
+                    } else {
+                        Files.createDirectories(socketFile.getParent());
+                    }
+                }
+                Files.deleteIfExists(socketFile);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        Files.deleteIfExists(socketFile);
+                    } catch (IOException e) {
+                        // Nothing more can be done while exiting
+                    }
+                }));
+            }
+            server.bind(address);
+            if (socketFile != null && POSIX) {
+                Files.setPosixFilePermissions(socketFile, PosixFilePermissions.fromString("rw-------"));
+            }
+            System.out.println("Solitaire server listening on " + address);
+
+            ExecutorService connections = Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "solitaire-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+            while (true) {
+                SocketChannel client = server.accept();
+                connections.execute(() -> serve(client));
+            }
+        } catch (IOException e) {
+            System.out.println("Error: server stopped: " + e.getMessage());
+        }
+    }
+
+    static int parsePort(String text) {
+        try {
+            int port = Integer.parseInt(text);
+            return port > 0 && port < 65536 ? port : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static SocketAddress address(String socketPath, int port) {
+        if (socketPath != null) {
+            return UnixDomainSocketAddress.of(socketPath);
+        }
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+/*---------------------------------------------------------------------
+ |  Method SERVE
+ |
+ |  Purpose:  Answer requests on one connection until the client closes
+ |            it. A malformed request ends the connection; a job that
+ |            fails (e.g. an unreadable deck file, or any exception from
+ |            the engine) gets an ERROR reply and the connection stays
+ |            open. A message longer than MAX_MESSAGE_LENGTH is refused
+ |            with an ERROR reply before anything is allocated for it,
+ |            and the connection is then closed, since the message is
+ |            still unread. Both count as failures in the statistics.
+ |
+ |  Pre-condition: client is a newly accepted connection.
+ |
+ |  Post-condition: client is closed.
+ |
+ |  Parameters:
+ |      client -- the connection
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    private static void serve(SocketChannel client) {
+        try (client;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)))) {
+            while (true) {
+                int op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+
+                if (op == OP_STATS) {
+                    out.writeByte(OK);
+                    writeFrame(out, STATS.report().getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    continue;
+                }
+                if (op != OP_ENCRYPT && op != OP_DECRYPT) {
+                    return;
+                }
+
+                String deckPath = new String(readFrame(in, MAX_PATH_LENGTH), StandardCharsets.UTF_8);
+                int length = in.readInt();
+                if (length < 0 || length > MAX_MESSAGE_LENGTH) {
+                    byte[] reply = ("Error: message is longer than " + MAX_MESSAGE_LENGTH
+                            + " bytes").getBytes(StandardCharsets.UTF_8);
+                    out.writeByte(ERROR);
+                    writeFrame(out, reply);
+                    out.flush();
+                    STATS.record(0, 0, reply.length, true);
+                    return;
+                }
+                byte[] message = new byte[length];
+                in.readFully(message);
+
+                long start = System.nanoTime();
+                byte status;
+                byte[] reply;
+                try {
+                    reply = SolitaireEngine.process(op == OP_ENCRYPT, keystreamFor(deckPath),
+                            message, message.length);
+                    status = reply.length > 0 ? OK : NO_LETTERS;
+                } catch (IOException | UncheckedIOException e) {
+                    status = ERROR;
+                    reply = ("Error: " + e.getMessage()).getBytes(StandardCharsets.UTF_8);
+                } catch (RuntimeException e) {
+                    status = ERROR;
+                    reply = ("Error: " + e).getBytes(StandardCharsets.UTF_8);
+                }
+                out.writeByte(status);
+                writeFrame(out, reply);
+                out.flush();
+                STATS.record(System.nanoTime() - start, message.length, reply.length, status == ERROR);
+            }
+        } catch (IOException e) {
+            // The client went away or sent a malformed request
+        }
+    }
+
+    static byte[] readFrame(DataInputStream in, int limit) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > limit) {
+            throw new IOException("Bad frame length: " + length);
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return data;
+    }
+
+    static void writeFrame(DataOutputStream out, byte[] data) throws IOException {
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+/*---------------------------------------------------------------------
+ |  Method KEYSTREAM_FOR
+ |
+ |  Purpose:  A new generator for a deck file, whose deck comes from the
+ |            DeckFile cache, so the file is only parsed again when it
+ |            changes. The keystream cache is used as in Encrypt (see
+ |            KeystreamCache).
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: The deck file is in the DeckFile cache.
+ |
+ |  Parameters:
+ |      deckPath -- the deck file, as given by the client
+ |
+ |  Returns:  The generator, at position 0.
+ |
+ |  Throws:   IOException if the deck file cannot be used.
+ *-------------------------------------------------------------------*/
+    private static KeystreamGenerator keystreamFor(String deckPath) throws IOException {
+        return KeystreamCache.generator(DeckFile.load(deckPath).toDeck());
+    }
+
+/*---------------------------------------------------------------------
+ |  Method WARM_UP
+ |
+ |  Purpose:  Encrypt and decrypt WARM_UP_LETTERS generated letters
+ |            with an unshuffled deck, so the cleaning, keystream,
+ |            combine and writing code is compiled before the first
+ |            real job arrives. The keystream cache is not used, so no
+ |            cache file is made for the warm-up deck.
+ |
+ |  Pre-condition: None
+ |
+ |  Post-condition: None
+ |
+ |  Parameters:  None
+ |
+ |  Returns:  None (void)
+ *-------------------------------------------------------------------*/
+    private static void warmUp() {
+        int[] cards = new int[DeckState.DECK_SIZE];
+        for (int i = 0; i < cards.length; i++) {
+            cards[i] = i + 1;
+        }
+        SolitaireEngine engine = new SolitaireEngine(DeckState.of(cards));
+        byte[] message = new byte[WARM_UP_LETTERS];
+        for (int i = 0; i < message.length; i++) {
+            message[i] = (byte) (i % 61 == 60 ? '\n' : 'a' + i % 26);
+        }
+
+        for (int round = 0; round < 3; round++) {
+            engine.decrypt(engine.encrypt(message));
+        }
+    }
+
+/*---------------------------------------------------------------------
+ |  Class Stats
+ |
+ |  Purpose:  Counters for the 'S' report: jobs, failures, bytes in and
+ |            out, and latency, with a histogram of latencies in
+ |            power-of-two microsecond buckets for rough percentiles.
+ |            Every counter is a LongAdder or atomic, so connection
+ |            threads never wait on each other to record a job.
+ *-------------------------------------------------------------------*/
+    private static final class Stats {
+        private final long started = System.nanoTime();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(64);   // Bucket b: below 2^b microseconds
+
+        void record(long nanos, long in, long out, boolean failed) {
+            requests.increment();
+            if (failed) {
+                failures.increment();
+            }
+            bytesIn.add(in);
+            bytesOut.add(out);
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos / 1000));
+        }
+
+        String report() {
+            double seconds = (System.nanoTime() - started) / 1e9;
+            long count = requests.sum();
+            String separator = System.lineSeparator();
+            return String.format("uptime      %.1f s", seconds) + separator
+                 + String.format("requests    %d (%d failed)", count, failures.sum()) + separator
+                 + String.format("throughput  %.1f requests/s, %.2f MB/s in, %.2f MB/s out",
+                        count / seconds, bytesIn.sum() / seconds / 1e6,
+                        bytesOut.sum() / seconds / 1e6) + separator
+                 + String.format("latency     mean %.3f ms, p50 < %.3f ms, p99 < %.3f ms, max %.3f ms",
+                        count == 0 ? 0.0 : totalNanos.sum() / 1e6 / count,
+                        percentile(count, 0.50), percentile(count, 0.99),
+                        maxNanos.get() / 1e6) + separator;
+        }
+
+        // Upper bound of the bucket holding the given fraction of jobs, in ms
+        private double percentile(long count, double fraction) {
+            long wanted = (long) Math.ceil(count * fraction);
+            long seen = 0;
+            for (int b = 0; b < buckets.length(); b++) {
+                seen += buckets.get(b);
+                if (seen >= wanted && seen > 0) {
+                    return (1L << b) / 1000.0;
+                }
+            }
+            return 0.0;
+        }
+    }
+}
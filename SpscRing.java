@@ -0,0 +1,166 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class SpscRing
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Bounded lock-free ring buffer for exactly one
+ ||                   producer thread and one consumer thread, used
+ ||                   between the stages of Pipeline. The producer only
+ ||                   writes the tail counter and the consumer only
+ ||                   writes the head counter, each with a release store
+ ||                   read by the other side with an acquire load, so
+ ||                   no locks or compare-and-set are needed. Each side
+ ||                   also keeps a private copy of the other side's
+ ||                   counter and only rereads the shared one when the
+ ||                   ring looks full (or empty).
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  SpscRing(int capacity)
+ ||                        – An empty ring; capacity is a power of two.
+ ||
+ ||  Class Methods:  void pause(int attempt)
+ ||                        – Back-off used while waiting on a ring.
+ ||
+ ||  Inst. Methods:  boolean offer(T item), T poll()
+ ||                        – Non-blocking add and remove.
+ ||
+ ||                   void put(T item), T take()
+ ||                        – Add and remove, waiting while the ring is
+ ||                          full or empty.
+ ||
+ ++-----------------------------------------------------------------------*/
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+class SpscRing<T> {
+    private final Object[] slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();  // Next slot to take; written by the consumer
+    private final AtomicLong tail = new AtomicLong();  // Next slot to fill; written by the producer
+    private long knownHead;    // Producer's copy of head
+    private long knownTail;    // Consumer's copy of tail
+
+/*---------------------------------------------------------------------
+ |  Constructor SpscRing
+ |
+ |  Purpose:  Create an empty ring.
+ |
+ |  Pre-condition: capacity is a positive power of two.
+ |
+ |  Post-condition: The ring is empty.
+ |
+ |  Parameters:
+ |      capacity -- the number of items the ring can hold
+ |
+ |  Returns:  None (constructor)
+ *-------------------------------------------------------------------*/
+    SpscRing(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        this.slots = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods OFFER and POLL
+ |
+ |  Purpose:  OFFER -- add an item at the tail if there is room. Called
+ |                     only by the producer thread.
+ |            POLL  -- remove the item at the head if there is one.
+ |                     Called only by the consumer thread.
+ |
+ |  Pre-condition: OFFER -- item is not null.
+ |
+ |  Post-condition: Everything the producer wrote before offering an
+ |                  item is visible to the consumer that polls it.
+ |
+ |  Parameters:
+ |      item -- the item to add
+ |
+ |  Returns:  OFFER: true if the item was added; POLL: the item, or
+ |            null if the ring was empty.
+ *-------------------------------------------------------------------*/
+    boolean offer(T item) {
+        long t = tail.get();
+        if (t - knownHead > mask) {
+            knownHead = head.getAcquire();
+            if (t - knownHead > mask) {
+                return false;
+            }
+        }
+        slots[(int) t & mask] = item;
+        tail.setRelease(t + 1);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    T poll() {
+        long h = head.get();
+        if (h >= knownTail) {
+            knownTail = tail.getAcquire();
+            if (h >= knownTail) {
+                return null;
+            }
+        }
+        int slot = (int) h & mask;
+        T item = (T) slots[slot];
+        slots[slot] = null;
+        head.setRelease(h + 1);
+        return item;
+    }
+
+/*---------------------------------------------------------------------
+ |  Methods PUT, TAKE and PAUSE
+ |
+ |  Purpose:  PUT   -- offer, waiting until there is room.
+ |            TAKE  -- poll, waiting until there is an item.
+ |            PAUSE -- wait a little before trying again: spin at first,
+ |                     then yield, then park for 50 microseconds at a
+ |                     time, so a stage waiting on a slower one does not
+ |                     keep a core busy.
+ |
+ |  Pre-condition: As for OFFER and POLL.
+ |
+ |  Post-condition: The item has been added or removed.
+ |
+ |  Parameters:
+ |      item    -- the item to add
+ |      attempt -- how many times the caller has tried so far
+ |
+ |  Returns:  TAKE: the item; the others: None (void)
+ *-------------------------------------------------------------------*/
+    void put(T item) {
+        for (int attempt = 0; !offer(item); attempt++) {
+            pause(attempt);
+        }
+    }
+
+    T take() {
+        T item;
+        for (int attempt = 0; (item = poll()) == null; attempt++) {
+            pause(attempt);
+        }
+        return item;
+    }
+
+    static void pause(int attempt) {
+        if (attempt < 100) {
+            Thread.onSpinWait();
+        } else if (attempt < 200) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(50_000);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class VectorCombiner
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  Combiner built on the incubating Vector API. Each
+ ||                   step loads a full vector of message bytes and
+ ||                   keystream bytes (SPECIES_PREFERRED, e.g. 32 bytes
+ ||                   with AVX2), adds or subtracts them, and brings the
+ ||                   lanes that left 1–26 back with a masked subtract or
+ ||                   add of 26; no lane ever leaves the byte range. The
+ ||                   values after the last full vector go through
+ ||                   ScalarCombiner.
+ ||
+ ||                   This file is kept out of the main source directory
+ ||                   because it needs the jdk.incubator.vector module:
+ ||
+ ||                     javac *.java
+ ||                     javac --add-modules jdk.incubator.vector -cp . -d . simd/*.java
+ ||                     java --add-modules jdk.incubator.vector Encrypt ...
+ ||
+ ||                   Combiner.select loads it by name and falls back to
+ ||                   ScalarCombiner without it.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  Combiner
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  VectorCombiner()
+ ||
+ ||  Class Methods:  None
+ ||
+ ||  Inst. Methods:  void encrypt(...), void decrypt(...)
+ ||                        – See Combiner.
+ ||
+ ++-----------------------------------------------------------------------*/
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+class VectorCombiner implements Combiner {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    public void encrypt(byte[] values, int off, byte[] key, int keyOff, int len) {
+        int bound = SPECIES.loopBound(len);
+        int j = 0;
+        for (; j < bound; j += SPECIES.length()) {
+            ByteVector sum = ByteVector.fromArray(SPECIES, values, off + j)
+                    .add(ByteVector.fromArray(SPECIES, key, keyOff + j));
+            sum.sub((byte) 26, sum.compare(VectorOperators.GT, (byte) 26))
+               .intoArray(values, off + j);
+        }
+        ScalarCombiner.encryptRange(values, off + j, key, keyOff + j, len - j);
+    }
+
+    public void decrypt(byte[] values, int off, byte[] key, int keyOff, int len) {
+        int bound = SPECIES.loopBound(len);
+        int j = 0;
+        for (; j < bound; j += SPECIES.length()) {
+            ByteVector difference = ByteVector.fromArray(SPECIES, values, off + j)
+                    .sub(ByteVector.fromArray(SPECIES, key, keyOff + j));
+            difference.add((byte) 26, difference.compare(VectorOperators.LE, (byte) 0))
+                      .intoArray(values, off + j);
+        }
+        ScalarCombiner.decryptRange(values, off + j, key, keyOff + j, len - j);
+    }
+}
@@ -0,0 +1,119 @@
+/*+----------------------------------------------------------------------
+ ||
+ ||  Class VectorLaneKernel
+ ||
+ ||         Author:  Emily Foley
+ ||
+ ||        Purpose:  LaneKernel built on the incubating Vector API. A
+ ||                   vector holds one card's position in SPECIES.length()
+ ||                   neighbouring lanes (64 decks with AVX-512, 32 with
+ ||                   AVX2), and each step runs the position formulas of
+ ||                   LaneKernel on all of them at once with compares and
+ ||                   blends, exactly as ScalarLaneKernel does for one
+ ||                   lane. All positions stay within 0–55, so bytes are
+ ||                   wide enough throughout. The lanes are taken a
+ ||                   vector at a time, doing every step for one group
+ ||                   before the next, so a group's 28 rows stay in the
+ ||                   L1 cache.
+ ||
+ ||                   Compiled separately, like VectorCombiner:
+ ||
+ ||                     javac --add-modules jdk.incubator.vector -cp . -d . simd/*.java
+ ||
+ ||                   LaneKernel.select loads it by name and falls back to
+ ||                   ScalarLaneKernel without it.
+ ||
+ ||  Inherits From:  None
+ ||
+ ||     Interfaces:  LaneKernel
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||      Constants:  None
+ ||
+ |+-----------------------------------------------------------------------
+ ||
+ ||   Constructors:  VectorLaneKernel()
+ ||
+ ||  Class Methods:  None
+ ||
+ ||  Inst. Methods:  void steps(byte[] positions, int stride, byte[] out, int count)
+ ||                        – See LaneKernel.
+ ||
+ ++-----------------------------------------------------------------------*/
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+class VectorLaneKernel implements LaneKernel {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    public void steps(byte[] positions, int stride, byte[] out, int count) {
+        for (int lane = 0; lane < stride; lane += SPECIES.length()) {
+            for (int s = 0; s < count; s++) {
+                step(positions, stride, lane).intoArray(out, s * stride + lane);
+            }
+        }
+    }
+
+    // One step for the lanes starting at lane; see ScalarLaneKernel.step
+    private static ByteVector step(byte[] positions, int stride, int lane) {
+        ByteVector a = ByteVector.fromArray(SPECIES, positions, 26 * stride + lane);
+        ByteVector ta = below(a);
+        ByteVector b0 = swap(ByteVector.fromArray(SPECIES, positions, 27 * stride + lane), a, ta);
+        ByteVector t1 = below(b0);
+        ByteVector t2 = below(t1);
+        ByteVector jokerA = swap(swap(ta, b0, t1), t1, t2);
+        ByteVector lo = jokerA.min(t2);
+        ByteVector hi = jokerA.max(t2);
+        ByteVector afterHi = hi.add((byte) 1);               // p > hi:  p - (hi + 1)
+        ByteVector beforeLo = lo.neg().add((byte) 28);       // p < lo:  p + (28 - lo)
+        ByteVector between = lo.add(hi).neg().add((byte) 27); // else:    p + (27 - lo - hi)
+
+        ByteVector bottom = ByteVector.zero(SPECIES);
+        for (int i = 0; i < 28; i++) {
+            int row = i * stride + lane;
+            ByteVector x = ByteVector.fromArray(SPECIES, positions, row);
+            x = swap(swap(swap(x, a, ta), b0, t1), t1, t2);
+            x = x.add(between)
+                 .blend(x.sub(afterHi), x.compare(VectorOperators.GT, hi))
+                 .blend(x.add(beforeLo), x.compare(VectorOperators.LT, lo));
+            x.intoArray(positions, row);
+            bottom = bottom.blend((byte) (i + 1), x.eq((byte) 27));
+        }
+
+        ByteVector k = bottom.blend((byte) 0, bottom.compare(VectorOperators.GE, (byte) 27));
+        ByteVector wrap = k.neg().add((byte) 27);             // p < k:   p + (27 - k)
+        ByteVector top = ByteVector.zero(SPECIES);
+        for (int i = 0; i < 28; i++) {
+            int row = i * stride + lane;
+            ByteVector x = ByteVector.fromArray(SPECIES, positions, row);
+            x = x.sub(k)
+                 .blend(x.add(wrap), x.compare(VectorOperators.LT, k))
+                 .blend((byte) 27, x.eq((byte) 27));
+            x.intoArray(positions, row);
+            top = top.blend((byte) (i + 1), x.eq((byte) 0));
+        }
+
+        ByteVector q = top.min((byte) 27);
+        ByteVector output = ByteVector.zero(SPECIES);
+        for (int i = 0; i < 28; i++) {
+            ByteVector x = ByteVector.fromArray(SPECIES, positions, i * stride + lane);
+            output = output.blend((byte) (i + 1), x.eq(q));
+        }
+        return output.blend((byte) 0, output.compare(VectorOperators.GE, (byte) 27));
+    }
+
+    // Position p after swapping positions x and y, in every lane
+    private static ByteVector swap(ByteVector p, ByteVector x, ByteVector y) {
+        VectorMask<Byte> atX = p.eq(x);
+        VectorMask<Byte> atY = p.eq(y);
+        return p.blend(y, atX).blend(x, atY);
+    }
+
+    // Where a joker at x moves to: one place down, or from 27 to 0
+    private static ByteVector below(ByteVector x) {
+        return x.add((byte) 1).blend((byte) 0, x.eq((byte) 27));
+    }
+}